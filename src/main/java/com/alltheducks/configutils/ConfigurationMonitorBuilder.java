@@ -10,9 +10,11 @@ import java.util.List;
 public class ConfigurationMonitorBuilder<T> {
 
     private static final int DEFUALT_POLLING_FREQ_SECONDS = 10;
+    private static final int DEFAULT_RELOAD_TIMEOUT_SECONDS = 30;
 
     private File configFile;
     private int pollingFreqSeconds;
+    private int reloadTimeoutSeconds = DEFAULT_RELOAD_TIMEOUT_SECONDS;
     private ReloadableConfigurationService<T> configService;
     private List<? extends ConfigurationChangeListener<T>> configChangeListeners;
 
@@ -31,6 +33,15 @@ public class ConfigurationMonitorBuilder<T> {
         return this;
     }
 
+    /**
+     * @param reloadTimeoutSeconds The maximum time a reload may take before it is abandoned, or 0 to reload on the
+     *                             monitor thread without a timeout.
+     */
+    public ConfigurationMonitorBuilder<T> withReloadTimeoutSeconds(final int reloadTimeoutSeconds) {
+        this.reloadTimeoutSeconds = reloadTimeoutSeconds;
+        return this;
+    }
+
     public ConfigurationMonitorBuilder<T> withConfigChangeListeners(final List<? extends ConfigurationChangeListener<T>> configChangeListeners) {
         this.configChangeListeners = configChangeListeners;
         return this;
@@ -47,7 +58,7 @@ public class ConfigurationMonitorBuilder<T> {
             pollingFreqSeconds = DEFUALT_POLLING_FREQ_SECONDS;
         }
 
-        return new PollingConfigurationMonitor<T>(pollingFreqSeconds, configFile, configService, configChangeListeners);
+        return new PollingConfigurationMonitor<T>(pollingFreqSeconds, configFile, configService, configChangeListeners, reloadTimeoutSeconds);
     }
 
 }
@@ -1,11 +1,19 @@
 package com.alltheducks.configutils;
 
+import com.alltheducks.configutils.service.AsyncCachingConfigurationService;
+import com.alltheducks.configutils.service.AsyncFileConfigurationService;
 import com.alltheducks.configutils.service.CachingConfigurationService;
+import com.alltheducks.configutils.service.ConfigurationDeduplicator;
+import com.alltheducks.configutils.service.ConfigurationFreezer;
+import com.alltheducks.configutils.service.ConfigurationValidator;
+import com.alltheducks.configutils.service.ConfigurationWarmer;
+import com.alltheducks.configutils.service.FileConfigurationService;
 import com.alltheducks.configutils.service.JsonConfigurationService;
 import com.alltheducks.configutils.service.ReloadableConfigurationService;
 import com.alltheducks.configutils.service.XmlConfigurationService;
 
 import java.io.File;
+import java.util.concurrent.ExecutorService;
 
 public class ConfigurationServiceBuilder<T> {
 
@@ -13,6 +21,11 @@ public class ConfigurationServiceBuilder<T> {
     private File configFile;
     private Class<T> configClass;
     private String defaultConfigFileClasspathLocation;
+    private boolean compressed;
+    private boolean deduplicated;
+    private ConfigurationFreezer<T> configurationFreezer;
+    private ConfigurationValidator<T> configurationValidator;
+    private ConfigurationWarmer<T> configurationWarmer;
 
     public ConfigurationServiceBuilder<T> withEncodingType(final EncodingType encodingType) {
         this.encodingType = encodingType;
@@ -34,23 +47,76 @@ public class ConfigurationServiceBuilder<T> {
         return this;
     }
 
+    public ConfigurationServiceBuilder<T> withCompression(final boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    public ConfigurationServiceBuilder<T> withDeduplication(final boolean deduplicated) {
+        this.deduplicated = deduplicated;
+        return this;
+    }
+
+    public ConfigurationServiceBuilder<T> withConfigurationFreezer(final ConfigurationFreezer<T> configurationFreezer) {
+        this.configurationFreezer = configurationFreezer;
+        return this;
+    }
+
+    public ConfigurationServiceBuilder<T> withConfigurationValidator(final ConfigurationValidator<T> configurationValidator) {
+        this.configurationValidator = configurationValidator;
+        return this;
+    }
+
+    public ConfigurationServiceBuilder<T> withConfigurationWarmer(final ConfigurationWarmer<T> configurationWarmer) {
+        this.configurationWarmer = configurationWarmer;
+        return this;
+    }
+
     public ReloadableConfigurationService<T> build() {
+        final CachingConfigurationService<T> configurationService = new CachingConfigurationService<>(buildFileConfigurationService(), configurationFreezer);
+        configurationService.setConfigurationValidator(configurationValidator);
+        configurationService.setConfigurationWarmer(configurationWarmer);
+        return configurationService;
+    }
+
+    /**
+     * Builds a non-blocking configuration service which reads and decodes the configuration file on the given
+     * executor.
+     *
+     * @param decodeExecutor The executor used for I/O completions, decoding and persisting. It is owned by the
+     *                       caller.
+     */
+    public AsyncCachingConfigurationService<T> buildAsync(final ExecutorService decodeExecutor) {
+        if (decodeExecutor == null) {
+            throw new RuntimeException("Decode executor not specified");
+        }
+        final AsyncCachingConfigurationService<T> configurationService = new AsyncCachingConfigurationService<>(
+                new AsyncFileConfigurationService<>(buildFileConfigurationService(), decodeExecutor), configurationFreezer);
+        configurationService.setConfigurationValidator(configurationValidator);
+        configurationService.setConfigurationWarmer(configurationWarmer);
+        return configurationService;
+    }
+
+    private FileConfigurationService<T> buildFileConfigurationService() {
         if (configFile == null) {
             throw new RuntimeException("Configuration file not specified");
         }
         if (configClass == null) {
             throw new RuntimeException("Configuration class not specified");
         }
+        final FileConfigurationService<T> fileConfigurationService;
         if (encodingType == EncodingType.XML) {
-            final XmlConfigurationService<T> xmlConfigurationService = new XmlConfigurationService<>(configClass, configFile, defaultConfigFileClasspathLocation);
-            return new CachingConfigurationService<>(xmlConfigurationService);
-        }
-        if (encodingType == EncodingType.JSON) {
-            final JsonConfigurationService<T> jsonConfigurationService = new JsonConfigurationService<T>(configClass, configFile, defaultConfigFileClasspathLocation);
-            return new CachingConfigurationService<>(jsonConfigurationService);
+            fileConfigurationService = new XmlConfigurationService<>(configClass, configFile, defaultConfigFileClasspathLocation);
+        } else if (encodingType == EncodingType.JSON) {
+            fileConfigurationService = new JsonConfigurationService<T>(configClass, configFile, defaultConfigFileClasspathLocation);
         } else {
             throw new RuntimeException("Not implemented");
         }
+        fileConfigurationService.setCompressed(compressed);
+        if (deduplicated) {
+            fileConfigurationService.setDeduplicator(ConfigurationDeduplicator.shared());
+        }
+        return fileConfigurationService;
     }
 
     public enum EncodingType {
@@ -0,0 +1,23 @@
+package com.alltheducks.configutils.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * <p>Decodes and encodes a configuration bean without runtime reflection.</p>
+ * <p>Implementations are generated at compile time for classes annotated with {@link GenerateCodec}.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public interface ConfigurationCodec<C> {
+
+    /**
+     * @param inputStream   The stream to decode the configuration from.
+     * @param defaultConfig The configuration to decode on top of. If null, a new configuration bean is created.
+     * @return The decoded configuration.
+     */
+    public C decode(InputStream inputStream, C defaultConfig) throws IOException;
+
+    public void encode(C configuration, OutputStream outputStream) throws IOException;
+
+}
@@ -0,0 +1,441 @@
+package com.alltheducks.configutils.codec;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Generates a JSON {@link ConfigurationCodec} for each class annotated with {@link GenerateCodec}.</p>
+ * <p>For a class {@code edu.myuni.example.Configuration} the codec is generated as
+ * {@code edu.myuni.example.ConfigurationJsonCodec}, and is picked up automatically by
+ * {@link com.alltheducks.configutils.service.JsonConfigurationService}. The generated code uses Jackson's streaming
+ * API and calls the bean's accessors directly, so no reflection is used when decoding or encoding.</p>
+ * <p>To stay compatible with files written by Jackson, a compile error is reported for any property Jackson would
+ * treat differently: getters without setters and vice versa, getters and setters of different types, and Jackson
+ * annotations. Like Jackson, the generated codec fails on unrecognised fields.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+@SupportedAnnotationTypes("com.alltheducks.configutils.codec.GenerateCodec")
+public class ConfigurationCodecProcessor extends AbstractProcessor {
+
+    private static final String[] JACKSON_ANNOTATION_PACKAGES = {
+            "com.fasterxml.jackson.annotation.",
+            "com.fasterxml.jackson.databind.annotation."
+    };
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateCodec.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@GenerateCodec can only be applied to classes");
+                continue;
+            }
+            final TypeElement typeElement = (TypeElement) element;
+            try {
+                generateCodec(typeElement);
+            } catch (CodecGenerationException e) {
+                error(e.element, e.getMessage());
+            } catch (IOException e) {
+                error(typeElement, String.format("Could not write codec: %s", e.getMessage()));
+            }
+        }
+        return true;
+    }
+
+    private void generateCodec(final TypeElement typeElement) throws IOException, CodecGenerationException {
+        checkInstantiable(typeElement);
+
+        final String packageName = getPackageName(typeElement);
+        final String codecSimpleName = getCodecSimpleName(typeElement);
+        final String beanName = typeElement.getQualifiedName().toString();
+        final List<Property> properties = getProperties(typeElement);
+
+        final StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import com.alltheducks.configutils.codec.ConfigurationCodec;\n");
+        source.append("import com.alltheducks.configutils.codec.JsonCodecSupport;\n");
+        source.append("import com.fasterxml.jackson.core.JsonEncoding;\n");
+        source.append("import com.fasterxml.jackson.core.JsonGenerator;\n");
+        source.append("import com.fasterxml.jackson.core.JsonParser;\n");
+        source.append("import com.fasterxml.jackson.core.JsonToken;\n\n");
+        source.append("import java.io.IOException;\n");
+        source.append("import java.io.InputStream;\n");
+        source.append("import java.io.OutputStream;\n\n");
+        source.append("/**\n * Generated by ").append(ConfigurationCodecProcessor.class.getName())
+                .append(" for {@link ").append(beanName).append("}.\n */\n");
+        source.append("public final class ").append(codecSimpleName)
+                .append(" implements ConfigurationCodec<").append(beanName).append("> {\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public ").append(beanName).append(" decode(final InputStream inputStream, final ")
+                .append(beanName).append(" defaultConfig) throws IOException {\n");
+        source.append("        try (final JsonParser parser = JsonCodecSupport.JSON_FACTORY.createParser(inputStream)) {\n");
+        source.append("            if (parser.nextToken() == null) {\n");
+        source.append("                throw JsonCodecSupport.noContent(parser, ").append(beanName).append(".class);\n");
+        source.append("            }\n");
+        source.append("            if (JsonCodecSupport.isNull(parser)) {\n");
+        source.append("                return defaultConfig;\n");
+        source.append("            }\n");
+        source.append("            return read(parser, defaultConfig);\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public void encode(final ").append(beanName)
+                .append(" configuration, final OutputStream outputStream) throws IOException {\n");
+        source.append("        try (final JsonGenerator generator = JsonCodecSupport.JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)) {\n");
+        source.append("            write(generator, configuration);\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+
+        source.append("    public static ").append(beanName).append(" read(final JsonParser parser, final ")
+                .append(beanName).append(" target) throws IOException {\n");
+        source.append("        if (JsonCodecSupport.isNull(parser)) {\n");
+        source.append("            return null;\n");
+        source.append("        }\n");
+        source.append("        JsonCodecSupport.expectStartObject(parser, ").append(beanName).append(".class);\n");
+        source.append("        final ").append(beanName).append(" configuration = target != null ? target : new ")
+                .append(beanName).append("();\n");
+        source.append("        while (parser.nextToken() == JsonToken.FIELD_NAME) {\n");
+        source.append("            final String name = parser.getCurrentName();\n");
+        source.append("            parser.nextToken();\n");
+        source.append("            switch (name) {\n");
+        for (Property property : properties) {
+            source.append("                case \"").append(property.name).append("\":\n");
+            source.append("                    ").append(property.readStatement()).append("\n");
+            source.append("                    break;\n");
+        }
+        source.append("                default:\n");
+        source.append("                    throw JsonCodecSupport.unrecognisedField(parser, name, ").append(beanName).append(".class);\n");
+        source.append("            }\n");
+        source.append("        }\n");
+        source.append("        return configuration;\n");
+        source.append("    }\n\n");
+
+        source.append("    public static void write(final JsonGenerator generator, final ").append(beanName)
+                .append(" configuration) throws IOException {\n");
+        source.append("        if (configuration == null) {\n");
+        source.append("            generator.writeNull();\n");
+        source.append("            return;\n");
+        source.append("        }\n");
+        source.append("        generator.writeStartObject();\n");
+        for (Property property : properties) {
+            source.append("        generator.writeFieldName(\"").append(property.name).append("\");\n");
+            source.append("        ").append(property.writeStatement()).append("\n");
+        }
+        source.append("        generator.writeEndObject();\n");
+        source.append("    }\n\n");
+        source.append("}\n");
+
+        final String codecName = packageName.isEmpty() ? codecSimpleName : packageName + "." + codecSimpleName;
+        final JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(codecName, typeElement);
+        try (final Writer writer = sourceFile.openWriter()) {
+            writer.write(source.toString());
+        }
+    }
+
+    private void checkInstantiable(final TypeElement typeElement) throws CodecGenerationException {
+        if (!typeElement.getModifiers().contains(Modifier.PUBLIC)
+                || typeElement.getModifiers().contains(Modifier.ABSTRACT)
+                || (typeElement.getNestingKind() == NestingKind.MEMBER && !typeElement.getModifiers().contains(Modifier.STATIC))
+                || typeElement.getNestingKind() == NestingKind.LOCAL
+                || typeElement.getNestingKind() == NestingKind.ANONYMOUS) {
+            throw new CodecGenerationException(typeElement, "@GenerateCodec classes must be public, concrete and top level or static");
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(typeElement.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return;
+            }
+        }
+        throw new CodecGenerationException(typeElement, "@GenerateCodec classes must have a public no-argument constructor");
+    }
+
+    private List<Property> getProperties(final TypeElement typeElement) throws CodecGenerationException {
+        final List<? extends Element> members = processingEnv.getElementUtils().getAllMembers(typeElement);
+        checkNoJacksonAnnotations(typeElement);
+        for (Element member : members) {
+            checkNoJacksonAnnotations(member);
+            if (member.getKind() == ElementKind.METHOD) {
+                for (VariableElement parameter : ((ExecutableElement) member).getParameters()) {
+                    checkNoJacksonAnnotations(parameter);
+                }
+            }
+        }
+        final Map<String, ExecutableElement> getters = new LinkedHashMap<>();
+        final Map<String, ExecutableElement> setters = new LinkedHashMap<>();
+
+        for (ExecutableElement method : ElementFilter.methodsIn(members)) {
+            final Set<Modifier> modifiers = method.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+                continue;
+            }
+            final String methodName = method.getSimpleName().toString();
+            if (method.getParameters().isEmpty() && method.getReturnType().getKind() != TypeKind.VOID) {
+                if (methodName.startsWith("get") && methodName.length() > 3 && !methodName.equals("getClass")) {
+                    getters.put(propertyName(methodName.substring(3)), method);
+                } else if (methodName.startsWith("is") && methodName.length() > 2
+                        && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+                    getters.put(propertyName(methodName.substring(2)), method);
+                }
+            } else if (method.getParameters().size() == 1 && methodName.startsWith("set") && methodName.length() > 3) {
+                setters.put(propertyName(methodName.substring(3)), method);
+            }
+        }
+
+        for (Map.Entry<String, ExecutableElement> getter : getters.entrySet()) {
+            if (!setters.containsKey(getter.getKey())) {
+                throw new CodecGenerationException(getter.getValue(), String.format(
+                        "@GenerateCodec property '%s' has a getter but no setter, so it could be written but not read back", getter.getKey()));
+            }
+        }
+
+        final List<Property> properties = new ArrayList<>();
+        for (Map.Entry<String, ExecutableElement> setter : setters.entrySet()) {
+            final ExecutableElement getter = getters.get(setter.getKey());
+            if (getter == null) {
+                throw new CodecGenerationException(setter.getValue(), String.format(
+                        "@GenerateCodec property '%s' has a setter but no getter, so it could be read but not written", setter.getKey()));
+            }
+            final TypeMirror type = setter.getValue().getParameters().get(0).asType();
+            if (!processingEnv.getTypeUtils().isSameType(type, getter.getReturnType())) {
+                throw new CodecGenerationException(setter.getValue(), String.format(
+                        "@GenerateCodec property '%s' has a getter of type %s but a setter of type %s", setter.getKey(), getter.getReturnType(), type));
+            }
+            properties.add(new Property(setter.getKey(), propertyKind(setter.getValue(), type), type.toString(),
+                    "configuration." + getter.getSimpleName() + "()",
+                    "configuration." + setter.getValue().getSimpleName() + "(%s);"));
+        }
+
+        for (VariableElement field : ElementFilter.fieldsIn(members)) {
+            final Set<Modifier> modifiers = field.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)
+                    || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            final String name = field.getSimpleName().toString();
+            if (setters.containsKey(name) && getters.containsKey(name)) {
+                continue;
+            }
+            final TypeMirror type = field.asType();
+            properties.add(new Property(name, propertyKind(field, type), type.toString(),
+                    "configuration." + name,
+                    "configuration." + name + " = %s;"));
+        }
+        return properties;
+    }
+
+    /**
+     * The generated codec only follows Jackson's default naming and visibility, so annotations which would change how
+     * Jackson reads or writes the bean are rejected rather than silently ignored.
+     */
+    private void checkNoJacksonAnnotations(final Element element) throws CodecGenerationException {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            final String annotationName = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+            for (String jacksonPackage : JACKSON_ANNOTATION_PACKAGES) {
+                if (annotationName.startsWith(jacksonPackage)) {
+                    throw new CodecGenerationException(element, String.format(
+                            "Jackson annotations are not supported by @GenerateCodec: @%s", annotationName));
+                }
+            }
+        }
+    }
+
+    private PropertyKind propertyKind(final Element element, final TypeMirror type) throws CodecGenerationException {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return PropertyKind.BOOLEAN;
+            case INT:
+                return PropertyKind.INT;
+            case LONG:
+                return PropertyKind.LONG;
+            case DOUBLE:
+                return PropertyKind.DOUBLE;
+            case DECLARED:
+                final DeclaredType declaredType = (DeclaredType) type;
+                final TypeElement declaredElement = (TypeElement) declaredType.asElement();
+                final String name = declaredElement.getQualifiedName().toString();
+                switch (name) {
+                    case "java.lang.String":
+                        return PropertyKind.STRING;
+                    case "java.lang.Boolean":
+                        return PropertyKind.BOXED_BOOLEAN;
+                    case "java.lang.Integer":
+                        return PropertyKind.BOXED_INT;
+                    case "java.lang.Long":
+                        return PropertyKind.BOXED_LONG;
+                    case "java.lang.Double":
+                        return PropertyKind.BOXED_DOUBLE;
+                    case "java.util.List":
+                        if (declaredType.getTypeArguments().size() == 1
+                                && declaredType.getTypeArguments().get(0).toString().equals("java.lang.String")) {
+                            return PropertyKind.STRING_LIST;
+                        }
+                        break;
+                    default:
+                        if (declaredElement.getAnnotation(GenerateCodec.class) != null) {
+                            return PropertyKind.NESTED;
+                        }
+                }
+                break;
+            default:
+                break;
+        }
+        throw new CodecGenerationException(element, String.format("Unsupported property type for @GenerateCodec: %s", type));
+    }
+
+    private void error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private String getPackageName(final TypeElement typeElement) {
+        final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(typeElement);
+        return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    }
+
+    private String getCodecSimpleName(final TypeElement typeElement) {
+        final String packageName = getPackageName(typeElement);
+        final String qualifiedName = typeElement.getQualifiedName().toString();
+        final String simpleName = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+        return simpleName.replace('.', '_') + ConfigurationCodecs.JSON_CODEC_SUFFIX;
+    }
+
+    private String getNestedCodecName(final String typeName) {
+        final TypeElement nestedElement = processingEnv.getElementUtils().getTypeElement(typeName);
+        final String packageName = getPackageName(nestedElement);
+        final String codecSimpleName = getCodecSimpleName(nestedElement);
+        return packageName.isEmpty() ? codecSimpleName : packageName + "." + codecSimpleName;
+    }
+
+    /**
+     * Mirrors Jackson's default property naming, which lower cases all leading upper case characters.
+     */
+    static String propertyName(final String accessorSuffix) {
+        final StringBuilder name = new StringBuilder(accessorSuffix.length());
+        int i = 0;
+        while (i < accessorSuffix.length() && Character.isUpperCase(accessorSuffix.charAt(i))) {
+            name.append(Character.toLowerCase(accessorSuffix.charAt(i)));
+            i++;
+        }
+        name.append(accessorSuffix.substring(i));
+        return name.toString();
+    }
+
+    private enum PropertyKind {
+        STRING, BOOLEAN, INT, LONG, DOUBLE, BOXED_BOOLEAN, BOXED_INT, BOXED_LONG, BOXED_DOUBLE, STRING_LIST, NESTED
+    }
+
+    private class Property {
+        final String name;
+        final PropertyKind kind;
+        final String typeName;
+        final String getExpression;
+        final String setStatementFormat;
+
+        Property(final String name, final PropertyKind kind, final String typeName, final String getExpression,
+                 final String setStatementFormat) {
+            this.name = name;
+            this.kind = kind;
+            this.typeName = typeName;
+            this.getExpression = getExpression;
+            this.setStatementFormat = setStatementFormat;
+        }
+
+        String readStatement() {
+            switch (kind) {
+                case STRING:
+                    return set("JsonCodecSupport.readString(parser)");
+                case BOOLEAN:
+                    return set("JsonCodecSupport.readBooleanValue(parser)");
+                case INT:
+                    return set("JsonCodecSupport.readIntValue(parser)");
+                case LONG:
+                    return set("JsonCodecSupport.readLongValue(parser)");
+                case DOUBLE:
+                    return set("JsonCodecSupport.readDoubleValue(parser)");
+                case BOXED_BOOLEAN:
+                    return set("JsonCodecSupport.readBoolean(parser)");
+                case BOXED_INT:
+                    return set("JsonCodecSupport.readInteger(parser)");
+                case BOXED_LONG:
+                    return set("JsonCodecSupport.readLong(parser)");
+                case BOXED_DOUBLE:
+                    return set("JsonCodecSupport.readDouble(parser)");
+                case STRING_LIST:
+                    return set("JsonCodecSupport.readStringList(parser)");
+                case NESTED:
+                    return set(getNestedCodecName(typeName) + ".read(parser, null)");
+                default:
+                    throw new IllegalStateException(kind.name());
+            }
+        }
+
+        String writeStatement() {
+            switch (kind) {
+                case STRING:
+                    return "JsonCodecSupport.writeString(generator, " + getExpression + ");";
+                case BOOLEAN:
+                    return "generator.writeBoolean(" + getExpression + ");";
+                case INT:
+                case LONG:
+                case DOUBLE:
+                    return "generator.writeNumber(" + getExpression + ");";
+                case BOXED_BOOLEAN:
+                    return "if (" + getExpression + " == null) { generator.writeNull(); } else { generator.writeBoolean(" + getExpression + "); }";
+                case BOXED_INT:
+                case BOXED_LONG:
+                case BOXED_DOUBLE:
+                    return "if (" + getExpression + " == null) { generator.writeNull(); } else { generator.writeNumber(" + getExpression + "); }";
+                case STRING_LIST:
+                    return "JsonCodecSupport.writeStringList(generator, " + getExpression + ");";
+                case NESTED:
+                    return getNestedCodecName(typeName) + ".write(generator, " + getExpression + ");";
+                default:
+                    throw new IllegalStateException(kind.name());
+            }
+        }
+
+        private String set(final String valueExpression) {
+            return String.format(setStatementFormat, valueExpression);
+        }
+    }
+
+    private static class CodecGenerationException extends Exception {
+        final Element element;
+
+        CodecGenerationException(final Element element, final String message) {
+            super(message);
+            this.element = element;
+        }
+    }
+
+}
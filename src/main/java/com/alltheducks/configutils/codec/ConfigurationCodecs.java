@@ -0,0 +1,50 @@
+package com.alltheducks.configutils.codec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Locates the codecs generated by {@link ConfigurationCodecProcessor}.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public final class ConfigurationCodecs {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationCodecs.class);
+
+    static final String JSON_CODEC_SUFFIX = "JsonCodec";
+
+    private ConfigurationCodecs() {
+    }
+
+    /**
+     * @param configClass The configuration bean class.
+     * @return The generated JSON codec for the configuration class, or null if none was generated.
+     */
+    @SuppressWarnings("unchecked")
+    public static <C> ConfigurationCodec<C> findJsonCodec(final Class<C> configClass) {
+        if (configClass == null) {
+            return null;
+        }
+        final String codecClassName = jsonCodecClassName(configClass);
+        try {
+            final Class<?> codecClass = Class.forName(codecClassName, true, configClass.getClassLoader());
+            logger.debug("Using generated JSON codec {}.", codecClassName);
+            return (ConfigurationCodec<C>) codecClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            logger.warn(String.format("Could not instantiate generated JSON codec %s.", codecClassName), e);
+            return null;
+        }
+    }
+
+    static String jsonCodecClassName(final Class<?> configClass) {
+        final Package configPackage = configClass.getPackage();
+        final String packageName = configPackage == null ? "" : configPackage.getName();
+        final String simpleName = packageName.isEmpty()
+                ? configClass.getName()
+                : configClass.getName().substring(packageName.length() + 1);
+        final String codecSimpleName = simpleName.replace('$', '_') + JSON_CODEC_SUFFIX;
+        return packageName.isEmpty() ? codecSimpleName : packageName + "." + codecSimpleName;
+    }
+
+}
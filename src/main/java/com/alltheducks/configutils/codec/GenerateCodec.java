@@ -0,0 +1,27 @@
+package com.alltheducks.configutils.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Marks a configuration bean for which a JSON {@link ConfigurationCodec} should be generated at compile time by
+ * {@link ConfigurationCodecProcessor}.</p>
+ * <p>The bean must have a public no-argument constructor. Its properties are its getter/setter pairs and public
+ * fields, which may be Strings, booleans, ints, longs, doubles (primitive or boxed), Lists of Strings, or other
+ * beans annotated with {@code @GenerateCodec}. Property names follow Jackson's default naming, so the generated codec
+ * reads and writes the same files as {@link com.alltheducks.configutils.service.JsonConfigurationService}.</p>
+ * <p>Beans which Jackson would treat differently are rejected at compile time rather than generating a codec which
+ * loses or renames data: every getter must have a setter of the same type and vice versa, and Jackson annotations
+ * such as {@code @JsonProperty} can't be used. Remove {@code @GenerateCodec} from such beans to keep using Jackson.</p>
+ * <p>Likewise, the generated codec fails to decode any file which Jackson would fail to read, such as an empty file or
+ * one with an object where a number is expected, with the same exception types.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateCodec {
+}
@@ -0,0 +1,222 @@
+package com.alltheducks.configutils.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Runtime support for the JSON codecs generated by {@link ConfigurationCodecProcessor}.</p>
+ * <p>Values are read the way Jackson's ObjectMapper reads them with its default settings: scalars are coerced from
+ * strings (and numbers and booleans to strings), a null primitive is read as its default value, and anything else,
+ * such as an object or array where a scalar is expected, fails with the same exception types.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public final class JsonCodecSupport {
+
+    public static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private JsonCodecSupport() {
+    }
+
+    public static boolean isNull(final JsonParser parser) {
+        return parser.getCurrentToken() == JsonToken.VALUE_NULL;
+    }
+
+    public static void expectStartObject(final JsonParser parser, final Class<?> beanClass) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw mismatchedInput(parser, beanClass);
+        }
+    }
+
+    /**
+     * Matches the default behaviour of Jackson's ObjectMapper, which fails on fields that aren't bean properties.
+     */
+    public static JsonParseException unrecognisedField(final JsonParser parser, final String name, final Class<?> beanClass) {
+        return new JsonParseException(parser, String.format("Unrecognized field \"%s\" (class %s), not marked as ignorable", name, beanClass.getName()));
+    }
+
+    /**
+     * Matches Jackson's ObjectMapper, which fails to read a configuration from a file with no content.
+     */
+    public static MismatchedInputException noContent(final JsonParser parser, final Class<?> beanClass) {
+        return MismatchedInputException.from(parser, beanClass, "No content to map due to end-of-input");
+    }
+
+    public static String readString(final JsonParser parser) throws IOException {
+        final JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT
+                || token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+            return parser.getText();
+        }
+        throw mismatchedInput(parser, String.class);
+    }
+
+    public static Boolean readBoolean(final JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+                return !"0".equals(parser.getText());
+            case VALUE_STRING:
+                final String text = parser.getText().trim();
+                if (text.isEmpty() || text.equals("null")) {
+                    return null;
+                }
+                if (text.equals("true") || text.equals("True")) {
+                    return Boolean.TRUE;
+                }
+                if (text.equals("false") || text.equals("False")) {
+                    return Boolean.FALSE;
+                }
+                throw invalidFormat(parser, text, Boolean.class);
+            default:
+                throw mismatchedInput(parser, Boolean.class);
+        }
+    }
+
+    public static boolean readBooleanValue(final JsonParser parser) throws IOException {
+        final Boolean value = readBoolean(parser);
+        return value != null && value;
+    }
+
+    public static Integer readInteger(final JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getIntValue();
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                final String text = parser.getText().trim();
+                if (text.isEmpty() || text.equals("null")) {
+                    return null;
+                }
+                try {
+                    return Integer.valueOf(text);
+                } catch (NumberFormatException e) {
+                    throw invalidFormat(parser, text, Integer.class);
+                }
+            default:
+                throw mismatchedInput(parser, Integer.class);
+        }
+    }
+
+    public static int readIntValue(final JsonParser parser) throws IOException {
+        final Integer value = readInteger(parser);
+        return value == null ? 0 : value;
+    }
+
+    public static Long readLong(final JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getLongValue();
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                final String text = parser.getText().trim();
+                if (text.isEmpty() || text.equals("null")) {
+                    return null;
+                }
+                try {
+                    return Long.valueOf(text);
+                } catch (NumberFormatException e) {
+                    throw invalidFormat(parser, text, Long.class);
+                }
+            default:
+                throw mismatchedInput(parser, Long.class);
+        }
+    }
+
+    public static long readLongValue(final JsonParser parser) throws IOException {
+        final Long value = readLong(parser);
+        return value == null ? 0L : value;
+    }
+
+    public static Double readDouble(final JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                final String text = parser.getText().trim();
+                if (text.isEmpty() || text.equals("null")) {
+                    return null;
+                }
+                try {
+                    return Double.valueOf(text);
+                } catch (NumberFormatException e) {
+                    throw invalidFormat(parser, text, Double.class);
+                }
+            default:
+                throw mismatchedInput(parser, Double.class);
+        }
+    }
+
+    public static double readDoubleValue(final JsonParser parser) throws IOException {
+        final Double value = readDouble(parser);
+        return value == null ? 0.0 : value;
+    }
+
+    public static List<String> readStringList(final JsonParser parser) throws IOException {
+        if (isNull(parser)) {
+            return null;
+        }
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw mismatchedInput(parser, List.class);
+        }
+        final List<String> values = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            values.add(readString(parser));
+        }
+        return values;
+    }
+
+    public static void writeString(final JsonGenerator generator, final String value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+    }
+
+    public static void writeStringList(final JsonGenerator generator, final List<String> values) throws IOException {
+        if (values == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        for (String value : values) {
+            writeString(generator, value);
+        }
+        generator.writeEndArray();
+    }
+
+    private static MismatchedInputException mismatchedInput(final JsonParser parser, final Class<?> targetType) {
+        return MismatchedInputException.from(parser, targetType, String.format(
+                "Cannot deserialize instance of %s out of %s token", targetType.getName(), parser.getCurrentToken()));
+    }
+
+    private static InvalidFormatException invalidFormat(final JsonParser parser, final String text, final Class<?> targetType) {
+        return InvalidFormatException.from(parser, String.format(
+                "Cannot deserialize value of type %s from String \"%s\"", targetType.getName(), text), text, targetType);
+    }
+
+}
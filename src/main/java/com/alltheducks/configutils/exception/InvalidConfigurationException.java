@@ -0,0 +1,28 @@
+package com.alltheducks.configutils.exception;
+
+/**
+ * <p>Exception thrown by a {@link com.alltheducks.configutils.service.ConfigurationValidator} when a reloaded
+ * configuration should not replace the configuration currently in use.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class InvalidConfigurationException extends RuntimeException {
+
+    public InvalidConfigurationException() {
+    }
+
+    public InvalidConfigurationException(String message) {
+        super(message);
+    }
+
+    public InvalidConfigurationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public InvalidConfigurationException(Throwable cause) {
+        super(cause);
+    }
+
+    public InvalidConfigurationException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
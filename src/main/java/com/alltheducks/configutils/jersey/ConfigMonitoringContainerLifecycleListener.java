@@ -1,26 +1,64 @@
 package com.alltheducks.configutils.jersey;
 
 import com.alltheducks.configutils.monitor.ConfigMonitorRunner;
+import com.alltheducks.configutils.monitor.ConfigurationPreloader;
+import com.alltheducks.configutils.service.ConfigurationService;
 import org.glassfish.jersey.server.spi.Container;
 import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 public class ConfigMonitoringContainerLifecycleListener implements ContainerLifecycleListener {
     final Logger logger = LoggerFactory.getLogger(ConfigMonitoringContainerLifecycleListener.class);
 
+    static final int PRELOAD_TIMEOUT_SECONDS = 30;
+
     private final ConfigMonitorRunner configMonitorRunner;
+    private final ConfigurationPreloader configurationPreloader;
 
+    /**
+     * Preloads the configuration service of the monitor when the container starts, if it is a
+     * {@link com.alltheducks.configutils.monitor.PollingConfigurationMonitor}.
+     *
+     * @param configMonitorRunner Runs the configuration monitor.
+     */
     public ConfigMonitoringContainerLifecycleListener(final ConfigMonitorRunner configMonitorRunner) {
-        this.configMonitorRunner = configMonitorRunner;
+        this(configMonitorRunner, ConfigurationPreloader.getMonitoredConfigurationServices(configMonitorRunner.getConfigMonitor()));
     }
 
     public ConfigMonitoringContainerLifecycleListener(final Runnable configMonitor) {
-        this.configMonitorRunner = new ConfigMonitorRunner(configMonitor);
+        this(new ConfigMonitorRunner(configMonitor));
+    }
+
+    /**
+     * @param configMonitorRunner   Runs the configuration monitor.
+     * @param configurationServices The configuration services to preload in parallel when the container starts.
+     */
+    public ConfigMonitoringContainerLifecycleListener(final ConfigMonitorRunner configMonitorRunner,
+                                                      final Collection<? extends ConfigurationService<?>> configurationServices) {
+        this.configMonitorRunner = configMonitorRunner;
+        this.configurationPreloader = new ConfigurationPreloader(configurationServices);
+    }
+
+    public ConfigMonitoringContainerLifecycleListener(final Runnable configMonitor,
+                                                      final Collection<? extends ConfigurationService<?>> configurationServices) {
+        this(new ConfigMonitorRunner(configMonitor), configurationServices);
     }
 
     @Override
     public void onStartup(final Container container) {
+        configurationPreloader.start();
+        try {
+            if (!configurationPreloader.awaitReady(PRELOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Configuration services were not preloaded within the timeout ({} seconds).", PRELOAD_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted whilst preloading configuration services.");
+            Thread.currentThread().interrupt();
+        }
         configMonitorRunner.start();
     }
 
@@ -31,6 +69,11 @@ public class ConfigMonitoringContainerLifecycleListener implements ContainerLife
 
     @Override
     public void onShutdown(final Container container) {
+        configurationPreloader.stop();
         configMonitorRunner.stop();
     }
+
+    public ConfigurationPreloader getConfigurationPreloader() {
+        return configurationPreloader;
+    }
 }
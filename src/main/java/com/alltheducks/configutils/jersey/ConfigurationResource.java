@@ -0,0 +1,148 @@
+package com.alltheducks.configutils.jersey;
+
+import com.alltheducks.configutils.service.CachingConfigurationService;
+import com.alltheducks.configutils.service.ReloadableConfigurationService;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>Jersey resource which serves the configuration as JSON, for polling by front end widgets and other services.</p>
+ * <p>The configuration is encoded once each time it changes, rather than on every request. Responses carry an ETag
+ * derived from the encoded configuration, and requests with a matching {@code If-None-Match} header are answered with
+ * {@code 304 Not Modified}. As the ETag depends only on the configuration, it is the same on every server.</p>
+ * <p>When the configuration service is a {@link CachingConfigurationService}, its version is used to detect changes,
+ * so configuration which is modified in place and persisted is re-encoded. Otherwise a change is detected when a
+ * different configuration instance is loaded.</p>
+ * <p><strong>Warning:</strong> every property written by the ObjectWriter is served to anyone who can reach the
+ * resource, so the ObjectWriter must be limited to the properties which are safe to make public. Configuration often
+ * contains credentials such as API keys or passwords. Use a JSON view and disable
+ * {@code MapperFeature.DEFAULT_VIEW_INCLUSION}, so that properties without a view are left out:</p>
+ * <pre>
+ * {@code ObjectMapper objectMapper = new ObjectMapper();
+ * objectMapper.disable(MapperFeature.DEFAULT_VIEW_INCLUSION);
+ * resourceConfig.register(new ConfigurationResource<>(configurationService, objectMapper.writerWithView(Public.class)));}
+ * </pre>
+ * <p>Register an instance with your {@code ResourceConfig}; extend this class and annotate the subclass with
+ * {@link Path} to serve it from a different path.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+@Path("configuration")
+public class ConfigurationResource<C> {
+    final Logger logger = LoggerFactory.getLogger(ConfigurationResource.class);
+
+    private final ReloadableConfigurationService<C> configurationService;
+    private final ObjectWriter objectWriter;
+
+    private volatile EncodedConfiguration<C> encodedConfiguration;
+
+    /**
+     * @param configurationService The configuration service to serve the configuration of.
+     * @param objectWriter         The ObjectWriter used to encode the configuration. It should be limited to the
+     *                             properties which are safe to make public.
+     */
+    public ConfigurationResource(final ReloadableConfigurationService<C> configurationService, final ObjectWriter objectWriter) {
+        if (objectWriter == null) {
+            throw new RuntimeException("ObjectWriter not specified");
+        }
+        this.configurationService = configurationService;
+        this.objectWriter = objectWriter;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getConfiguration(@Context final Request request) {
+        final EncodedConfiguration<C> encoded = getEncodedConfiguration();
+
+        final CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+
+        Response.ResponseBuilder responseBuilder = request.evaluatePreconditions(encoded.entityTag);
+        if (responseBuilder == null) {
+            responseBuilder = Response.ok(encoded.body, MediaType.APPLICATION_JSON);
+        }
+        return responseBuilder.tag(encoded.entityTag).cacheControl(cacheControl).build();
+    }
+
+    private EncodedConfiguration<C> getEncodedConfiguration() {
+        final long version = getVersion();
+        final C configuration = configurationService.loadConfiguration();
+
+        EncodedConfiguration<C> encoded = encodedConfiguration;
+        if (encoded != null && encoded.isCurrent(version, configuration)) {
+            return encoded;
+        }
+
+        synchronized (this) {
+            encoded = encodedConfiguration;
+            if (encoded == null || !encoded.isCurrent(version, configuration)) {
+                logger.debug("Encoding configuration version {}.", version);
+                encoded = encode(version, configuration);
+                encodedConfiguration = encoded;
+            }
+        }
+        return encoded;
+    }
+
+    private long getVersion() {
+        if (configurationService instanceof CachingConfigurationService) {
+            return ((CachingConfigurationService<C>) configurationService).getVersion();
+        }
+        return -1;
+    }
+
+    private EncodedConfiguration<C> encode(final long version, final C configuration) {
+        try {
+            final byte[] body = objectWriter.writeValueAsBytes(configuration);
+            return new EncodedConfiguration<>(version, configuration, body, new EntityTag(digest(body)));
+        } catch (IOException e) {
+            logger.error("Unexpected IOException while encoding configuration", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String digest(final byte[] body) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(body);
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class EncodedConfiguration<C> {
+        final long version;
+        final C configuration;
+        final byte[] body;
+        final EntityTag entityTag;
+
+        EncodedConfiguration(final long version, final C configuration, final byte[] body, final EntityTag entityTag) {
+            this.version = version;
+            this.configuration = configuration;
+            this.body = body;
+            this.entityTag = entityTag;
+        }
+
+        boolean isCurrent(final long version, final C configuration) {
+            return this.version == version && this.configuration == configuration;
+        }
+    }
+
+}
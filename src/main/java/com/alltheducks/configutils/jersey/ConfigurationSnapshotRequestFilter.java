@@ -0,0 +1,69 @@
+package com.alltheducks.configutils.jersey;
+
+import com.alltheducks.configutils.service.RequestScopedConfigurationService;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Takes a snapshot of the configuration of each {@link RequestScopedConfigurationService} when a request is
+ * received, so every read within the request sees the same configuration.</p>
+ * <p>Register an instance with the Jersey application, e.g. {@code register(new ConfigurationSnapshotRequestFilter(services))},
+ * and read the configuration in resources with {@link #getConfiguration(ContainerRequestContext, RequestScopedConfigurationService)}
+ * using the injected {@code @Context ContainerRequestContext}.</p>
+ * <p>The snapshot is held as a property of the request rather than pinned to a thread, so it is discarded with the
+ * request however the request completes (including unmapped exceptions and asynchronous resources which resume on
+ * another thread) and can never leak into a later request served by the same thread. If the request was already
+ * pinned by {@link com.alltheducks.configutils.servlet.ConfigurationSnapshotFilter}, the snapshot is that pinned
+ * configuration.</p>
+ * <p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+@PreMatching
+public class ConfigurationSnapshotRequestFilter implements ContainerRequestFilter {
+
+    static final String SNAPSHOT_PROPERTY = ConfigurationSnapshotRequestFilter.class.getName() + ".snapshot";
+
+    private final List<RequestScopedConfigurationService<?>> configurationServices;
+
+    /**
+     * @param configurationServices The configuration services to take a snapshot of for each request.
+     */
+    public ConfigurationSnapshotRequestFilter(final Collection<? extends RequestScopedConfigurationService<?>> configurationServices) {
+        this.configurationServices = new ArrayList<RequestScopedConfigurationService<?>>(configurationServices);
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext requestContext) {
+        final Map<RequestScopedConfigurationService<?>, Object> snapshot = new IdentityHashMap<>(configurationServices.size());
+        for (RequestScopedConfigurationService<?> configurationService : configurationServices) {
+            snapshot.put(configurationService, configurationService.loadConfiguration());
+        }
+        requestContext.setProperty(SNAPSHOT_PROPERTY, snapshot);
+    }
+
+    /**
+     * Gets the configuration the request was received with.
+     *
+     * @param requestContext       The current request.
+     * @param configurationService The configuration service to read.
+     * @param <C>                  The configuration type.
+     * @return The configuration captured for the request by this filter, or the configuration loaded from the service
+     * if the filter didn't capture it (e.g. the service wasn't registered with the filter).
+     */
+    @SuppressWarnings("unchecked")
+    public static <C> C getConfiguration(final ContainerRequestContext requestContext, final RequestScopedConfigurationService<C> configurationService) {
+        final Map<RequestScopedConfigurationService<?>, Object> snapshot = (Map<RequestScopedConfigurationService<?>, Object>) requestContext.getProperty(SNAPSHOT_PROPERTY);
+        if (snapshot != null && snapshot.containsKey(configurationService)) {
+            return (C) snapshot.get(configurationService);
+        }
+        return configurationService.loadConfiguration();
+    }
+
+}
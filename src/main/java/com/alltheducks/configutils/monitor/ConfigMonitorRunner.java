@@ -27,6 +27,10 @@ public class ConfigMonitorRunner {
         executorService.submit(configMonitor);
     }
 
+    public Runnable getConfigMonitor() {
+        return configMonitor;
+    }
+
     public void stop() {
         logger.info("Destroying configuration monitor.");
 
@@ -0,0 +1,133 @@
+package com.alltheducks.configutils.monitor;
+
+import com.alltheducks.configutils.service.ConfigurationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Loads the configuration of a number of configuration services in parallel, so that caching services are warm
+ * before the first request arrives.</p>
+ * <p>The configuration services are loaded on a dedicated {@link ForkJoinPool}. {@link #isReady()} returns true once
+ * every service has been loaded, whether or not the load succeeded; failures are logged.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class ConfigurationPreloader {
+    final Logger logger = LoggerFactory.getLogger(ConfigurationPreloader.class);
+
+    /**
+     * The name of the servlet context attribute under which the preloader is published by
+     * {@link com.alltheducks.configutils.servlet.ConfigMonitoringContextListener}.
+     */
+    public static final String PRELOADER_ATTRIBUTE = ConfigurationPreloader.class.getName();
+
+    private final List<ConfigurationService<?>> configurationServices;
+    private final CountDownLatch readyLatch = new CountDownLatch(1);
+
+    private ForkJoinPool forkJoinPool;
+
+    public ConfigurationPreloader(final Collection<? extends ConfigurationService<?>> configurationServices) {
+        this.configurationServices = new ArrayList<ConfigurationService<?>>(configurationServices);
+    }
+
+    /**
+     * @param configMonitor A configuration monitor.
+     * @return The configuration service of the monitor if it is a {@link PollingConfigurationMonitor}, otherwise no
+     * configuration services.
+     */
+    public static Collection<? extends ConfigurationService<?>> getMonitoredConfigurationServices(final Runnable configMonitor) {
+        if (configMonitor instanceof PollingConfigurationMonitor) {
+            final ConfigurationService<?> configurationService = ((PollingConfigurationMonitor<?>) configMonitor).getConfigurationService();
+            if (configurationService != null) {
+                return Collections.singletonList(configurationService);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    public synchronized void start() {
+        if (forkJoinPool != null) {
+            return;
+        }
+        logger.info("Preloading {} configuration services.", configurationServices.size());
+        if (configurationServices.isEmpty()) {
+            readyLatch.countDown();
+            return;
+        }
+
+        final int parallelism = Math.min(configurationServices.size(), Runtime.getRuntime().availableProcessors());
+        forkJoinPool = new ForkJoinPool(parallelism);
+        forkJoinPool.execute(new PreloadAction(configurationServices));
+    }
+
+    public synchronized void stop() {
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return true once every configuration service has been preloaded.
+     */
+    public boolean isReady() {
+        return readyLatch.getCount() == 0;
+    }
+
+    /**
+     * Waits for every configuration service to be preloaded.
+     *
+     * @return true if the configuration services were preloaded within the timeout.
+     * @throws InterruptedException if interrupted whilst waiting.
+     */
+    public boolean awaitReady(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return readyLatch.await(timeout, unit);
+    }
+
+    private class PreloadAction extends RecursiveAction {
+        private final List<ConfigurationService<?>> services;
+
+        PreloadAction(final List<ConfigurationService<?>> services) {
+            this.services = services;
+        }
+
+        @Override
+        protected void compute() {
+            final List<PreloadServiceAction> actions = new ArrayList<>(services.size());
+            for (ConfigurationService<?> service : services) {
+                actions.add(new PreloadServiceAction(service));
+            }
+            invokeAll(actions);
+            logger.info("Preloaded {} configuration services.", services.size());
+            readyLatch.countDown();
+        }
+    }
+
+    private class PreloadServiceAction extends RecursiveAction {
+        private final ConfigurationService<?> service;
+
+        PreloadServiceAction(final ConfigurationService<?> service) {
+            this.service = service;
+        }
+
+        @Override
+        protected void compute() {
+            final long start = System.nanoTime();
+            try {
+                service.loadConfiguration();
+                logger.debug("Preloaded configuration service {} in {}ms.", service.getClass().getName(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (RuntimeException e) {
+                logger.error(String.format("Failed to preload configuration service %s.", service.getClass().getName()), e);
+            }
+        }
+    }
+
+}
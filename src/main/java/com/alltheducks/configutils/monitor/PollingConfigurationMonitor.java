@@ -6,6 +6,15 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
@@ -14,6 +23,13 @@ import java.util.List;
  * a configuration file for changes.  When changes are detected, it reloads
  * the configuration locally, and calls {@link com.alltheducks.configutils.monitor.ConfigurationChangeListener#configurationChanged(Object)}
  * on each registered listener.</p>
+ * <p>If a reload fails, for example because the configuration was rejected by a
+ * {@link com.alltheducks.configutils.service.ConfigurationValidator}, the previously loaded configuration is kept, the
+ * listeners are not called, and the reload is retried on the next poll.</p>
+ * <p>If a reload timeout is set, each reload runs on a separate worker thread and is abandoned if it doesn't complete
+ * within the timeout, for example because a network file system has hung. The previously loaded configuration is kept,
+ * the listeners are not called, and the reload is retried on the next poll once the abandoned reload has finished.
+ * This also ensures the monitor stops promptly when interrupted, whatever the worker is doing.</p>
  *
  * @see com.alltheducks.configutils.monitor.ConfigurationChangeListener
  * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
@@ -26,8 +42,11 @@ public class PollingConfigurationMonitor<T> implements Runnable {
     private final List<? extends ConfigurationChangeListener<T>> listeners;
     private File configurationFile;
     private int pollFreqSeconds;
+    private int reloadTimeoutSeconds;
 
     private long lastReload = -1;
+    private ExecutorService reloadExecutor;
+    private final AtomicBoolean workerReloading = new AtomicBoolean(false);
 
     public PollingConfigurationMonitor(int pollFreqSeconds, File configurationFile,
                                        ReloadableConfigurationService<T> configurationService) {
@@ -37,14 +56,27 @@ public class PollingConfigurationMonitor<T> implements Runnable {
     public PollingConfigurationMonitor(int pollFreqSeconds, File configurationFile,
                                        ReloadableConfigurationService<T> configurationService,
                                        List<? extends ConfigurationChangeListener<T>> listeners) {
-        logger.debug("Initialising PollingConfigurationMonitor (Polling freq: {}, Config file: {}, Config service: {}, Listeners: {})",
+        this(pollFreqSeconds, configurationFile, configurationService, listeners, 0);
+    }
+
+    /**
+     * @param reloadTimeoutSeconds The maximum time a reload may take before it is abandoned. If 0 or less, reloads run
+     *                             on the monitor thread without a timeout.
+     */
+    public PollingConfigurationMonitor(int pollFreqSeconds, File configurationFile,
+                                       ReloadableConfigurationService<T> configurationService,
+                                       List<? extends ConfigurationChangeListener<T>> listeners,
+                                       int reloadTimeoutSeconds) {
+        logger.debug("Initialising PollingConfigurationMonitor (Polling freq: {}, Config file: {}, Config service: {}, Listeners: {}, Reload timeout: {})",
                 pollFreqSeconds,
                 (configurationFile == null ? "null" : configurationFile.getName()),
                 (configurationService == null ? "null" : configurationService.getClass().getName()),
-                (listeners == null ? "null" : listeners.size()));
+                (listeners == null ? "null" : listeners.size()),
+                reloadTimeoutSeconds);
 
         this.configurationFile = configurationFile;
         this.pollFreqSeconds = pollFreqSeconds;
+        this.reloadTimeoutSeconds = reloadTimeoutSeconds;
         this.configurationService = configurationService;
         this.listeners = listeners;
     }
@@ -52,28 +84,98 @@ public class PollingConfigurationMonitor<T> implements Runnable {
     @Override
     public void run() {
         logger.debug("Started polling for configuration file changes...");
-        while (!Thread.currentThread().isInterrupted()) {
-            logger.trace("Polling for changes to the config file.");
-            if (configurationFile.lastModified() != lastReload) {
-                logger.debug("Configuration file modified.  Reloading.");
-                configurationService.reload();
-                lastReload = configurationFile.lastModified();
-
-                T config = configurationService.loadConfiguration();
-                if (listeners != null) {
-                    logger.debug("PollingConfigurationMonitor has {} listeners. Notifying the listeners now.", listeners.size());
-                    for (ConfigurationChangeListener<T> listener : listeners) {
-                        callListener(config, listener);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                logger.trace("Polling for changes to the config file.");
+                final long lastModified = configurationFile.lastModified();
+                if (lastModified != lastReload) {
+                    logger.debug("Configuration file modified.  Reloading.");
+                    if (reloadTimeoutSeconds > 0) {
+                        reloadWithTimeout(lastModified);
+                    } else {
+                        reload(lastModified);
                     }
                 }
-            }
 
-            try {
                 Thread.sleep(pollFreqSeconds * 1000);
-            } catch (InterruptedException e) {
-                logger.debug("PollingConfigurationMonitor thread has been interrupted. Shutting down.");
-                Thread.currentThread().interrupt();
-                break;
+            }
+        } catch (InterruptedException e) {
+            logger.debug("PollingConfigurationMonitor thread has been interrupted. Shutting down.");
+            Thread.currentThread().interrupt();
+        } finally {
+            if (reloadExecutor != null) {
+                reloadExecutor.shutdownNow();
+                reloadExecutor = null;
+            }
+        }
+    }
+
+    private void reload(final long lastModified) {
+        try {
+            configurationService.reload();
+        } catch (RuntimeException e) {
+            logger.error("Configuration reload failed. Keeping the previous configuration.", e);
+            return;
+        }
+        lastReload = lastModified;
+        notifyListeners(configurationService.loadConfiguration());
+    }
+
+    private void reloadWithTimeout(final long lastModified) throws InterruptedException {
+        // A cancelled Future reports that it is done straight away, even while the worker is still stuck in the
+        // reload, so the worker tracks whether it is still running itself.
+        if (workerReloading.get()) {
+            logger.warn("A previously abandoned configuration reload is still in progress. Skipping this reload.");
+            return;
+        }
+        if (reloadExecutor == null) {
+            reloadExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "configuration-reload-" + configurationFile.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        final Future<T> pendingReload = reloadExecutor.submit(new Callable<T>() {
+            @Override
+            public T call() {
+                workerReloading.set(true);
+                try {
+                    configurationService.reload();
+                    return configurationService.loadConfiguration();
+                } finally {
+                    workerReloading.set(false);
+                }
+            }
+        });
+
+        final T config;
+        try {
+            config = pendingReload.get(reloadTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            pendingReload.cancel(true);
+            logger.error("Configuration reload did not complete within the timeout ({} seconds). Keeping the previous configuration.", reloadTimeoutSeconds);
+            return;
+        } catch (ExecutionException e) {
+            logger.error("Configuration reload failed. Keeping the previous configuration.", e.getCause());
+            return;
+        } catch (InterruptedException e) {
+            pendingReload.cancel(true);
+            throw e;
+        }
+
+        lastReload = lastModified;
+        notifyListeners(config);
+    }
+
+    private void notifyListeners(T config) {
+        if (listeners != null) {
+            logger.debug("PollingConfigurationMonitor has {} listeners. Notifying the listeners now.", listeners.size());
+            for (ConfigurationChangeListener<T> listener : listeners) {
+                callListener(config, listener);
             }
         }
     }
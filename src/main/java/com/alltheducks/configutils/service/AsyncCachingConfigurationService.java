@@ -0,0 +1,324 @@
+package com.alltheducks.configutils.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Adds a caching layer and update publishing on top of an existing AsyncConfigurationService.</p>
+ * <p>Once loaded, the configuration is returned from memory without any I/O. Each reload and persist replaces the
+ * cached configuration and publishes it to every subscriber. Concurrent loads before the configuration is cached share
+ * a single read.</p>
+ * <p>As asynchronous operations can complete in any order, a reload which started before a persist completed is never
+ * cached over the persisted configuration, as it may have read the file before it was written.</p>
+ * <p>If a {@link ConfigurationFreezer} is supplied, each loaded or persisted configuration is frozen before it is
+ * cached, and a {@link ConfigurationValidator} and {@link ConfigurationWarmer} can be set to check and prepare each
+ * loaded configuration before it is cached, as with {@link CachingConfigurationService}. A configuration which fails
+ * either is never served; the load fails and the previous configuration is kept.</p>
+ * <p>This class also implements the blocking {@link ReloadableConfigurationService} interface by waiting on the
+ * asynchronous operations, so it can be driven by a
+ * {@link com.alltheducks.configutils.monitor.PollingConfigurationMonitor} like any other reloadable service.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class AsyncCachingConfigurationService<C> implements AsyncReloadableConfigurationService<C>, ReloadableConfigurationService<C> {
+    private final Logger logger = LoggerFactory.getLogger(AsyncCachingConfigurationService.class);
+
+    private final AsyncConfigurationService<C> internalConfigurationService;
+    private final List<ConfigurationCallback<C>> subscribers = new CopyOnWriteArrayList<>();
+
+    private final ConfigurationFreezer<C> configurationFreezer;
+
+    private volatile ConfigurationValidator<C> configurationValidator = null;
+    private volatile ConfigurationWarmer<C> configurationWarmer = null;
+
+    private volatile C configurationCache = null;
+    private final AtomicLong operationSequence = new AtomicLong();
+    private long cachedSequence = 0;
+    private List<CallbackFuture<C>> pendingLoads = null;
+
+    /**
+     * @param internalConfigurationService The AsyncConfigurationService used to do the actual loading and persisting
+     *                                     of configuration.
+     */
+    public AsyncCachingConfigurationService(final AsyncConfigurationService<C> internalConfigurationService) {
+        this(internalConfigurationService, null);
+    }
+
+    /**
+     * @param internalConfigurationService The AsyncConfigurationService used to do the actual loading and persisting
+     *                                     of configuration.
+     * @param configurationFreezer         Converts each loaded or persisted configuration into a read-only snapshot
+     *                                     before it is cached. May be null, in which case configuration is cached as is.
+     */
+    public AsyncCachingConfigurationService(final AsyncConfigurationService<C> internalConfigurationService,
+                                            final ConfigurationFreezer<C> configurationFreezer) {
+        logger.debug("Initialising AsyncCachingConfigurationService with internal configuration service of type {}.", internalConfigurationService.getClass().getName());
+        this.internalConfigurationService = internalConfigurationService;
+        this.configurationFreezer = configurationFreezer;
+    }
+
+    @Override
+    public Future<C> loadConfigurationAsync(final ConfigurationCallback<C> callback) {
+        final C configuration = configurationCache;
+        if (configuration != null) {
+            return CallbackFuture.completed(configuration, callback);
+        }
+
+        final CallbackFuture<C> future = new CallbackFuture<>(callback);
+        final C cached;
+        final boolean loading;
+        synchronized (this) {
+            cached = configurationCache;
+            loading = pendingLoads != null;
+            if (cached == null) {
+                if (!loading) {
+                    pendingLoads = new ArrayList<>();
+                }
+                pendingLoads.add(future);
+            }
+        }
+        if (cached != null) {
+            future.complete(cached);
+            return future;
+        }
+        if (loading) {
+            return future;
+        }
+
+        load(new ConfigurationCallback<C>() {
+            @Override
+            public void onSuccess(final C configuration) {
+                for (CallbackFuture<C> pendingLoad : takePendingLoads()) {
+                    pendingLoad.complete(configuration);
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable cause) {
+                for (CallbackFuture<C> pendingLoad : takePendingLoads()) {
+                    pendingLoad.fail(cause);
+                }
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public Future<C> reloadAsync(final ConfigurationCallback<C> callback) {
+        final CallbackFuture<C> future = new CallbackFuture<>(callback);
+        load(new ConfigurationCallback<C>() {
+            @Override
+            public void onSuccess(final C configuration) {
+                future.complete(configuration);
+            }
+
+            @Override
+            public void onFailure(final Throwable cause) {
+                future.fail(cause);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Loads the configuration from the internal service, caches it unless a more recent persist has completed since
+     * the load started, and publishes it.
+     *
+     * @param callback Notified with the configuration being served once the load completes.
+     */
+    private void load(final ConfigurationCallback<C> callback) {
+        final long loadSequence = operationSequence.incrementAndGet();
+        internalConfigurationService.loadConfigurationAsync(new ConfigurationCallback<C>() {
+            @Override
+            public void onSuccess(final C configuration) {
+                final C prepared;
+                try {
+                    prepared = prepare(configuration);
+                } catch (RuntimeException e) {
+                    logger.error("Loaded configuration failed validation or warm-up. Keeping the previous configuration.", e);
+                    callback.onFailure(e);
+                    publishFailure(e);
+                    return;
+                }
+                final C cached = cache(loadSequence, prepared);
+                if (cached == null) {
+                    logger.debug("Configuration was persisted while it was being loaded. Discarding the loaded configuration.");
+                    callback.onSuccess(configurationCache);
+                    return;
+                }
+                callback.onSuccess(cached);
+                publish(cached);
+            }
+
+            @Override
+            public void onFailure(final Throwable cause) {
+                callback.onFailure(cause);
+                publishFailure(cause);
+            }
+        });
+    }
+
+    @Override
+    public Future<Void> persistConfigurationAsync(final C configuration, final ConfigurationCallback<Void> callback) {
+        final CallbackFuture<Void> future = new CallbackFuture<>(callback);
+        internalConfigurationService.persistConfigurationAsync(configuration, new ConfigurationCallback<Void>() {
+            @Override
+            public void onSuccess(final Void result) {
+                final C cached = cache(operationSequence.incrementAndGet(), freeze(configuration));
+                future.complete(null);
+                if (cached != null) {
+                    publish(cached);
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable cause) {
+                future.fail(cause);
+            }
+        });
+        return future;
+    }
+
+    public ConfigurationValidator<C> getConfigurationValidator() {
+        return configurationValidator;
+    }
+
+    /**
+     * Sets the validator used to check each loaded configuration before it is cached.
+     *
+     * @param configurationValidator The validator, or null to cache loaded configuration without validating it.
+     */
+    public void setConfigurationValidator(final ConfigurationValidator<C> configurationValidator) {
+        this.configurationValidator = configurationValidator;
+    }
+
+    public ConfigurationWarmer<C> getConfigurationWarmer() {
+        return configurationWarmer;
+    }
+
+    /**
+     * Sets the warmer used to prepare derived state for each loaded configuration before it is cached.
+     *
+     * @param configurationWarmer The warmer, or null to disable warming up.
+     */
+    public void setConfigurationWarmer(final ConfigurationWarmer<C> configurationWarmer) {
+        this.configurationWarmer = configurationWarmer;
+    }
+
+    @Override
+    public ConfigurationSubscription subscribe(final ConfigurationCallback<C> subscriber) {
+        subscribers.add(subscriber);
+        return new ConfigurationSubscription() {
+            @Override
+            public void cancel() {
+                subscribers.remove(subscriber);
+            }
+        };
+    }
+
+    @Override
+    public C loadConfiguration() {
+        final C configuration = configurationCache;
+        if (configuration != null) {
+            return configuration;
+        }
+        return await(reloadAsync(null));
+    }
+
+    @Override
+    public void persistConfiguration(final C configuration) {
+        await(persistConfigurationAsync(configuration, null));
+    }
+
+    @Override
+    public void reload() {
+        await(reloadAsync(null));
+    }
+
+    /**
+     * Caches the configuration unless a more recent operation has already been cached.
+     *
+     * @param sequence The sequence number of the operation, taken when a load starts or when a persist completes.
+     * @return The cached configuration, or null if it was discarded.
+     */
+    private synchronized C cache(final long sequence, final C configuration) {
+        if (sequence < cachedSequence) {
+            return null;
+        }
+        cachedSequence = sequence;
+        configurationCache = configuration;
+        return configuration;
+    }
+
+    /**
+     * Validates, freezes and warms up a loaded configuration.
+     *
+     * @return The configuration to be cached.
+     */
+    private C prepare(final C configuration) {
+        final ConfigurationValidator<C> validator = configurationValidator;
+        if (validator != null) {
+            validator.validate(configuration);
+        }
+        final C frozen = freeze(configuration);
+        final ConfigurationWarmer<C> warmer = configurationWarmer;
+        if (warmer != null && frozen != null) {
+            warmer.warmUp(frozen);
+        }
+        return frozen;
+    }
+
+    private synchronized List<CallbackFuture<C>> takePendingLoads() {
+        final List<CallbackFuture<C>> loads = pendingLoads;
+        pendingLoads = null;
+        return loads == null ? new ArrayList<CallbackFuture<C>>() : loads;
+    }
+
+    private C freeze(final C configuration) {
+        if (configurationFreezer == null || configuration == null) {
+            return configuration;
+        }
+        return configurationFreezer.freeze(configuration, configurationCache);
+    }
+
+    private void publish(final C configuration) {
+        for (ConfigurationCallback<C> subscriber : subscribers) {
+            try {
+                subscriber.onSuccess(configuration);
+            } catch (RuntimeException e) {
+                logger.error("Configuration subscriber threw an exception.", e);
+            }
+        }
+    }
+
+    private void publishFailure(final Throwable cause) {
+        for (ConfigurationCallback<C> subscriber : subscribers) {
+            try {
+                subscriber.onFailure(cause);
+            } catch (RuntimeException e) {
+                logger.error("Configuration subscriber threw an exception.", e);
+            }
+        }
+    }
+
+    private static <V> V await(final Future<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted whilst waiting for configuration", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.alltheducks.configutils.service;
+
+import java.util.concurrent.Future;
+
+/**
+ * <p>Non-blocking counterpart of {@link ConfigurationService}.</p>
+ * <p>Each method returns immediately. The result is available from the returned {@link Future} and is also passed to
+ * the callback, if one is supplied, once the operation completes.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public interface AsyncConfigurationService<C> {
+
+    /**
+     * @param callback Notified when the configuration has been loaded. May be null.
+     * @return A future which completes with the loaded configuration.
+     */
+    public Future<C> loadConfigurationAsync(ConfigurationCallback<C> callback);
+
+    /**
+     * @param configuration The configuration to be persisted.
+     * @param callback      Notified when the configuration has been persisted. May be null.
+     * @return A future which completes once the configuration has been persisted.
+     */
+    public Future<Void> persistConfigurationAsync(C configuration, ConfigurationCallback<Void> callback);
+
+}
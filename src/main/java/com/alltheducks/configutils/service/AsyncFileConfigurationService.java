@@ -0,0 +1,183 @@
+package com.alltheducks.configutils.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * <p>Loads and persists configuration without blocking the calling thread.</p>
+ * <p>The configuration file is read with an {@link AsynchronousFileChannel} and decoded by the supplied
+ * {@link FileConfigurationService} on the decode executor. Persisting is delegated to the
+ * {@link FileConfigurationService} on the same executor so that it remains coordinated with any synchronous loads
+ * and persists.</p>
+ * <p>If a persist overlaps an asynchronous read, the read is retried synchronously on the decode executor rather than
+ * decoding a partially written file. Services whose configuration can't be read from the configuration file alone,
+ * such as {@link PatchLogConfigurationService}, are always loaded synchronously on the decode executor.</p>
+ * <p>The decode executor is owned by the caller and should be shut down when it is no longer required.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class AsyncFileConfigurationService<C> implements AsyncConfigurationService<C> {
+    private final Logger logger = LoggerFactory.getLogger(AsyncFileConfigurationService.class);
+
+    private final FileConfigurationService<C> fileConfigurationService;
+    private final ExecutorService decodeExecutor;
+
+    /**
+     * @param fileConfigurationService The service used to decode and persist the configuration.
+     * @param decodeExecutor           The executor on which I/O completions, decoding and persisting are run.
+     */
+    public AsyncFileConfigurationService(final FileConfigurationService<C> fileConfigurationService, final ExecutorService decodeExecutor) {
+        logger.debug("Initialising AsyncFileConfigurationService.");
+        this.fileConfigurationService = fileConfigurationService;
+        this.decodeExecutor = decodeExecutor;
+    }
+
+    @Override
+    public Future<C> loadConfigurationAsync(final ConfigurationCallback<C> callback) {
+        final CallbackFuture<C> future = new CallbackFuture<>(callback);
+        final File configurationFile = fileConfigurationService.getConfigurationFile();
+        final long writeSequence = fileConfigurationService.getWriteSequence();
+
+        if (!fileConfigurationService.isStagedLoadingSupported() || !configurationFile.exists() || writeSequence % 2 != 0) {
+            loadSynchronously(future);
+            return future;
+        }
+
+        final AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(configurationFile.toPath(),
+                    Collections.singleton(StandardOpenOption.READ), decodeExecutor);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unexpected exception while opening configuration file", e);
+            future.fail(e);
+            return future;
+        }
+
+        final ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.allocate((int) channel.size());
+        } catch (IOException | RuntimeException e) {
+            close(channel);
+            logger.error("Unexpected exception while opening configuration file", e);
+            future.fail(e);
+            return future;
+        }
+
+        read(channel, buffer, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(final Integer bytesRead, final Void attachment) {
+                if (bytesRead >= 0 && buffer.hasRemaining()) {
+                    read(channel, buffer, this);
+                    return;
+                }
+                close(channel);
+                decode(buffer, writeSequence, future);
+            }
+
+            @Override
+            public void failed(final Throwable cause, final Void attachment) {
+                close(channel);
+                logger.error("Unexpected exception while reading configuration file", cause);
+                future.fail(cause);
+            }
+        });
+
+        return future;
+    }
+
+    @Override
+    public Future<Void> persistConfigurationAsync(final C configuration, final ConfigurationCallback<Void> callback) {
+        final CallbackFuture<Void> future = new CallbackFuture<>(callback);
+        execute(future, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    fileConfigurationService.persistConfiguration(configuration);
+                    future.complete(null);
+                } catch (RuntimeException e) {
+                    future.fail(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Starts reading the rest of the file. A read which can't be started, for example because the decode executor
+     * rejected it, is reported to the handler as a failure rather than thrown.
+     */
+    private static void read(final AsynchronousFileChannel channel, final ByteBuffer buffer, final CompletionHandler<Integer, Void> handler) {
+        try {
+            channel.read(buffer, buffer.position(), null, handler);
+        } catch (RuntimeException e) {
+            handler.failed(e, null);
+        }
+    }
+
+    /**
+     * Runs on the decode executor, as the channel was opened with it.
+     */
+    private void decode(final ByteBuffer buffer, final long writeSequence, final CallbackFuture<C> future) {
+        try {
+            final C defaultConfig = fileConfigurationService.loadDefaultConfiguration();
+            final C configuration = fileConfigurationService.decodeConfiguration(
+                    new ByteArrayInputStream(buffer.array(), 0, buffer.position()), defaultConfig);
+
+            if (fileConfigurationService.getWriteSequence() != writeSequence) {
+                logger.debug("Configuration was persisted during the asynchronous read. Reloading synchronously.");
+                future.complete(fileConfigurationService.loadConfiguration());
+            } else {
+                future.complete(configuration);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (fileConfigurationService.getWriteSequence() != writeSequence) {
+                logger.debug("Configuration was persisted during the asynchronous read. Reloading synchronously.", e);
+                loadSynchronously(future);
+            } else {
+                logger.error("Unexpected exception while decoding configuration", e);
+                future.fail(e);
+            }
+        }
+    }
+
+    private void loadSynchronously(final CallbackFuture<C> future) {
+        execute(future, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.complete(fileConfigurationService.loadConfiguration());
+                } catch (RuntimeException e) {
+                    future.fail(e);
+                }
+            }
+        });
+    }
+
+    private void execute(final CallbackFuture<?> future, final Runnable task) {
+        try {
+            decodeExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            future.fail(e);
+        }
+    }
+
+    private void close(final AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Could not close configuration file channel.", e);
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.alltheducks.configutils.service;
+
+import java.util.concurrent.Future;
+
+/**
+ * <p>Non-blocking counterpart of {@link ReloadableConfigurationService}.</p>
+ * <p>In addition to reloading, it publishes each new configuration to subscribers, which can be used instead of
+ * registering a {@link com.alltheducks.configutils.monitor.ConfigurationChangeListener} with the monitor.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public interface AsyncReloadableConfigurationService<C> extends AsyncConfigurationService<C> {
+
+    /**
+     * @param callback Notified when the configuration has been reloaded. May be null.
+     * @return A future which completes with the reloaded configuration.
+     */
+    public Future<C> reloadAsync(ConfigurationCallback<C> callback);
+
+    /**
+     * Subscribes to configuration updates. The subscriber's {@link ConfigurationCallback#onSuccess(Object)} is called
+     * each time the configuration is reloaded or persisted, and {@link ConfigurationCallback#onFailure(Throwable)} is
+     * called if a reload fails.
+     *
+     * @param subscriber The subscriber to be notified of updates.
+     * @return A subscription which can be cancelled to stop receiving updates.
+     */
+    public ConfigurationSubscription subscribe(ConfigurationCallback<C> subscriber);
+
+}
@@ -4,6 +4,15 @@ package com.alltheducks.configutils.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * <p>Adds a caching layer on top of an existing ConfigurationService.</p>
  * <p>
@@ -16,6 +25,19 @@ import org.slf4j.LoggerFactory;
  * <p>
  * <p><strong>Warning:</strong> caching is local to the object; another instance of this class will not have its cache updated when
  * persisting.</p>
+ * <p>
+ * <p>By default every caller is handed the same mutable configuration instance. If a {@link ConfigurationFreezer} is
+ * supplied, each loaded or persisted configuration is frozen into a read-only snapshot before it is cached, so it can be
+ * shared between threads without defensive copying.</p>
+ * <p>
+ * <p>If a history size is set, the most recently cached configurations are retained as {@link ConfigurationSnapshot}s
+ * and the cache can be rolled back to any of them without reloading. Rolling back is most useful with a
+ * {@link ConfigurationFreezer}, or when callers persist new configuration instances, as a configuration which is
+ * modified in place will also be modified in the history.</p>
+ * <p>
+ * <p>A {@link ConfigurationValidator} and {@link ConfigurationWarmer} can be set to check each reloaded configuration
+ * and prepare any state derived from it before it is cached, including the first time it is loaded. A configuration
+ * which fails either is never served.</p>
  *
  * @see com.alltheducks.configutils.monitor.PollingConfigurationMonitor
  * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
@@ -23,21 +45,54 @@ import org.slf4j.LoggerFactory;
 public class CachingConfigurationService<C> implements ReloadableConfigurationService<C> {
     final Logger logger = LoggerFactory.getLogger(CachingConfigurationService.class);
 
-    public C configurationCache = null;
+    public volatile C configurationCache = null;
     public ConfigurationService<C> internalConfigurationService = null;
 
+    private final ConfigurationFreezer<C> configurationFreezer;
+
+    private volatile ConfigurationSnapshot<C> currentSnapshot = null;
+    private ConfigurationSnapshot<C>[] history = newHistory(0);
+
+    private volatile ConfigurationValidator<C> configurationValidator = null;
+    private volatile ConfigurationWarmer<C> configurationWarmer = null;
+    private volatile ConfigurationReloadReport lastReloadReport = null;
+
+    private final Object persistLock = new Object();
+    private final ExecutorService rollbackExecutor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "configuration-rollback");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     /**
      * @param internalConfigurationService The ConfigurationService used to do the actual loading and persisting of
      *                                     configuration.
      */
     public CachingConfigurationService(ConfigurationService<C> internalConfigurationService) {
+        this(internalConfigurationService, null);
+    }
+
+    /**
+     * @param internalConfigurationService The ConfigurationService used to do the actual loading and persisting of
+     *                                     configuration.
+     * @param configurationFreezer         Converts each loaded or persisted configuration into a read-only snapshot
+     *                                     before it is cached. May be null, in which case configuration is cached as is.
+     */
+    public CachingConfigurationService(ConfigurationService<C> internalConfigurationService, ConfigurationFreezer<C> configurationFreezer) {
         logger.debug("Initialising CachingConfigurationService with internal configuration service of type {}.", internalConfigurationService.getClass().getName());
         this.internalConfigurationService = internalConfigurationService;
+        this.configurationFreezer = configurationFreezer;
     }
 
     /**
      * Defers to the ConfigurationService passed into the constructor to load the configuration and then caches the
-     * result prior to returning it.
+     * result prior to returning it. The first load goes through the same stages as {@link #reload()}, so a
+     * configuration which fails validation or warm-up is never served; as there is no previous configuration to fall
+     * back to, the failure is rethrown and the next call tries again.
      *
      * @return The configuration that has been cached.
      */
@@ -47,7 +102,7 @@ public class CachingConfigurationService<C> implements ReloadableConfigurationSe
         if (configurationCache == null) {
             synchronized (this) {
                 if (configurationCache == null) {
-                    configurationCache = internalConfigurationService.loadConfiguration();
+                    load(false);
                     logger.debug("Configuration loaded from internal ConfigurationService ({}).", internalConfigurationService.getClass().getName());
                 }
             }
@@ -63,16 +118,292 @@ public class CachingConfigurationService<C> implements ReloadableConfigurationSe
     @Override
     public void persistConfiguration(C configuration) {
         logger.trace("Entering persistConfiguration on CachingConfigurationService");
-        internalConfigurationService.persistConfiguration(configuration);
-        configurationCache = configuration;
+        synchronized (persistLock) {
+            final String fingerprint;
+            if (internalConfigurationService instanceof FileConfigurationService) {
+                fingerprint = ((FileConfigurationService<C>) internalConfigurationService).persist(configuration);
+            } else {
+                internalConfigurationService.persistConfiguration(configuration);
+                fingerprint = null;
+            }
+            publish(freeze(configuration), fingerprint);
+        }
     }
 
 
+    /**
+     * <p>Reloads the configuration from the ConfigurationService passed into the constructor and replaces the cached
+     * configuration with it. The configuration is read, decoded, validated and warmed up before it is cached, and is
+     * only cached if every stage succeeds. Otherwise the previous configuration is kept and the failure is rethrown.</p>
+     * <p>If the reloading thread is interrupted (e.g. because the reload timed out), the reloaded configuration is
+     * discarded, however far the reload got.</p>
+     * <p>The timings of each stage are available from {@link #getLastReloadReport()}.</p>
+     */
     @Override
     public void reload() {
         logger.trace("Entering reload on CachingConfigurationService");
-        C config = internalConfigurationService.loadConfiguration();
-        configurationCache = config;
+        load(true);
+    }
+
+    /**
+     * Runs the configuration through each stage and publishes it if they all succeed.
+     *
+     * @param cancellable true to discard the configuration if the current thread is interrupted.
+     */
+    private void load(final boolean cancellable) {
+        final ConfigurationReloadReport report = new ConfigurationReloadReport(System.currentTimeMillis());
+        ConfigurationReloadReport.Stage stage = ConfigurationReloadReport.Stage.READ;
+        try {
+            final C config;
+            final String fingerprint;
+            long stageStart = System.nanoTime();
+            if (internalConfigurationService instanceof FileConfigurationService
+                    && ((FileConfigurationService<C>) internalConfigurationService).isStagedLoadingSupported()) {
+                final FileConfigurationService<C> fileConfigurationService = (FileConfigurationService<C>) internalConfigurationService;
+                final byte[] contents = fileConfigurationService.readConfiguration();
+                stageStart = recordStage(report, stage, stageStart);
+
+                stage = ConfigurationReloadReport.Stage.DECODE;
+                final FileConfigurationService.FingerprintedConfiguration<C> decoded = fileConfigurationService.decodeConfiguration(contents);
+                config = decoded.configuration;
+                fingerprint = decoded.fingerprint;
+            } else {
+                stage = ConfigurationReloadReport.Stage.DECODE;
+                config = internalConfigurationService.loadConfiguration();
+                fingerprint = null;
+            }
+            stageStart = recordStage(report, stage, stageStart);
+
+            if (cancellable && Thread.currentThread().isInterrupted()) {
+                logger.warn("Reload was cancelled before it completed. Discarding the reloaded configuration.");
+                return;
+            }
+
+            stage = ConfigurationReloadReport.Stage.VALIDATE;
+            final ConfigurationValidator<C> validator = configurationValidator;
+            if (validator != null) {
+                validator.validate(config);
+                stageStart = recordStage(report, stage, stageStart);
+            }
+
+            stage = ConfigurationReloadReport.Stage.WARM_UP;
+            final C frozen = freeze(config);
+            final ConfigurationWarmer<C> warmer = configurationWarmer;
+            if (warmer != null && frozen != null) {
+                warmer.warmUp(frozen);
+                recordStage(report, stage, stageStart);
+            }
+
+            final ConfigurationSnapshot<C> snapshot = cancellable
+                    ? publishUnlessInterrupted(frozen, fingerprint)
+                    : publish(frozen, fingerprint);
+            if (snapshot == null) {
+                logger.warn("Reload was cancelled before it was published. Discarding the reloaded configuration.");
+                return;
+            }
+            report.recordPublished(snapshot.getVersion());
+            logger.debug("Loaded configuration: {}", report);
+        } catch (IOException ex) {
+            report.recordFailure(stage, ex);
+            logger.error(String.format("Unexpected IOException while loading configuration. %s", getFallbackMessage()), ex);
+            throw new RuntimeException(ex);
+        } catch (RuntimeException ex) {
+            report.recordFailure(stage, ex);
+            logger.error(String.format("Configuration load failed at the %s stage. %s", stage, getFallbackMessage()), ex);
+            throw ex;
+        } finally {
+            lastReloadReport = report;
+        }
+    }
+
+    private String getFallbackMessage() {
+        return configurationCache == null
+                ? "There is no previous configuration to fall back to."
+                : "Keeping the previous configuration.";
+    }
+
+    /**
+     * @return A report on the most recent reload, or the initial load if it hasn't been reloaded since, or null if the
+     * configuration hasn't been loaded yet.
+     */
+    public ConfigurationReloadReport getLastReloadReport() {
+        return lastReloadReport;
+    }
+
+    public ConfigurationValidator<C> getConfigurationValidator() {
+        return configurationValidator;
+    }
+
+    /**
+     * Sets the validator used to check each reloaded configuration before it is cached.
+     *
+     * @param configurationValidator The validator, or null to cache reloaded configuration without validating it.
+     */
+    public void setConfigurationValidator(ConfigurationValidator<C> configurationValidator) {
+        this.configurationValidator = configurationValidator;
+    }
+
+    public ConfigurationWarmer<C> getConfigurationWarmer() {
+        return configurationWarmer;
+    }
+
+    /**
+     * Sets the warmer used to prepare derived state for each reloaded configuration before it is cached.
+     *
+     * @param configurationWarmer The warmer, or null to disable warming up.
+     */
+    public void setConfigurationWarmer(ConfigurationWarmer<C> configurationWarmer) {
+        this.configurationWarmer = configurationWarmer;
+    }
+
+    /**
+     * @return A number which is incremented each time the cached configuration is replaced, or 0 if the configuration
+     * has not been loaded yet.
+     */
+    public long getVersion() {
+        final ConfigurationSnapshot<C> snapshot = currentSnapshot;
+        return snapshot == null ? 0 : snapshot.getVersion();
+    }
+
+    /**
+     * @return The snapshot currently being served, or null if the configuration has not been loaded yet.
+     */
+    public ConfigurationSnapshot<C> getCurrentSnapshot() {
+        return currentSnapshot;
+    }
+
+    /**
+     * Sets the number of previously cached configurations to retain for rolling back. Changing the size clears the
+     * history. Defaults to 0, which disables the history.
+     *
+     * @param historySize The number of snapshots to retain.
+     */
+    public synchronized void setHistorySize(int historySize) {
+        if (historySize < 0) {
+            throw new IllegalArgumentException("History size must not be negative");
+        }
+        history = newHistory(historySize);
+        if (currentSnapshot != null && historySize > 0) {
+            history[slot(currentSnapshot.getVersion())] = currentSnapshot;
+        }
+    }
+
+    /**
+     * @return The retained snapshots, most recent first.
+     */
+    public synchronized List<ConfigurationSnapshot<C>> getHistory() {
+        final List<ConfigurationSnapshot<C>> snapshots = new ArrayList<>(history.length);
+        final long latestVersion = getVersion();
+        for (long v = latestVersion; v > 0 && v > latestVersion - history.length; v--) {
+            final ConfigurationSnapshot<C> snapshot = history[slot(v)];
+            if (snapshot != null && snapshot.getVersion() == v) {
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * <p>Replaces the cached configuration with a previously cached version from the history. The rolled back
+     * configuration is cached as a new version.</p>
+     * <p>If requested, the configuration is also persisted on a background thread, so that it is picked up by other
+     * servers. Otherwise the rollback only lasts until the next reload. Background persists run one at a time, and are
+     * skipped if a newer configuration has been published by the time they run.</p>
+     *
+     * @param version The version to roll back to.
+     * @param persist true to also persist the rolled back configuration.
+     * @return The new snapshot, or null if the version is no longer in the history.
+     */
+    public ConfigurationSnapshot<C> rollbackTo(long version, boolean persist) {
+        final ConfigurationSnapshot<C> rolledBack;
+        synchronized (this) {
+            if (history.length == 0) {
+                return null;
+            }
+            final ConfigurationSnapshot<C> snapshot = history[slot(version)];
+            if (snapshot == null || snapshot.getVersion() != version) {
+                logger.warn("Could not roll back to configuration version {} as it is no longer in the history.", version);
+                return null;
+            }
+            logger.info("Rolling back to configuration version {} ({}).", version, snapshot.getFingerprint());
+            rolledBack = publish(snapshot.getConfiguration(), snapshot.getFingerprint());
+        }
+
+        if (persist) {
+            persistInBackground(rolledBack);
+        }
+        return rolledBack;
+    }
+
+    /**
+     * Persists the rolled back configuration on the rollback executor, which runs one persist at a time in the order
+     * they were requested. The persist is skipped if a newer configuration has been published in the meantime, so an
+     * older rollback can't overwrite a later persist.
+     */
+    private void persistInBackground(final ConfigurationSnapshot<C> snapshot) {
+        rollbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (persistLock) {
+                    if (getVersion() != snapshot.getVersion()) {
+                        logger.info("Not persisting rolled back configuration version {} as it has been superseded by version {}.", snapshot.getVersion(), getVersion());
+                        return;
+                    }
+                    try {
+                        internalConfigurationService.persistConfiguration(snapshot.getConfiguration());
+                        logger.info("Persisted rolled back configuration version {}.", snapshot.getVersion());
+                    } catch (RuntimeException e) {
+                        logger.error(String.format("Failed to persist rolled back configuration version %d.", snapshot.getVersion()), e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Publishes the configuration unless the current thread has been interrupted. The check is made while holding the
+     * lock, immediately before the cached configuration is replaced, so a reload cancelled while it was waiting for the
+     * lock is still discarded.
+     *
+     * @return The published snapshot, or null if the thread was interrupted.
+     */
+    private synchronized ConfigurationSnapshot<C> publishUnlessInterrupted(C configuration, String fingerprint) {
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        return publish(configuration, fingerprint);
+    }
+
+    private synchronized ConfigurationSnapshot<C> publish(C configuration, String fingerprint) {
+        final ConfigurationSnapshot<C> snapshot = new ConfigurationSnapshot<>(getVersion() + 1, System.currentTimeMillis(), fingerprint, configuration);
+        if (history.length > 0) {
+            history[slot(snapshot.getVersion())] = snapshot;
+        }
+        configurationCache = configuration;
+        currentSnapshot = snapshot;
+        return snapshot;
+    }
+
+    private static long recordStage(ConfigurationReloadReport report, ConfigurationReloadReport.Stage stage, long stageStart) {
+        final long now = System.nanoTime();
+        report.recordStage(stage, now - stageStart);
+        return now;
+    }
+
+    private int slot(long version) {
+        return (int) (version % history.length);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <C> ConfigurationSnapshot<C>[] newHistory(int size) {
+        return (ConfigurationSnapshot<C>[]) new ConfigurationSnapshot[size];
+    }
+
+    private C freeze(C configuration) {
+        if (configurationFreezer == null || configuration == null) {
+            return configuration;
+        }
+        return configurationFreezer.freeze(configuration, configurationCache);
     }
 
 }
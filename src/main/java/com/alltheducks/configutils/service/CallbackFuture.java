@@ -0,0 +1,117 @@
+package com.alltheducks.configutils.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link Future} which is completed explicitly and notifies an optional {@link ConfigurationCallback}.
+ */
+class CallbackFuture<V> implements Future<V> {
+    private final Logger logger = LoggerFactory.getLogger(CallbackFuture.class);
+
+    private final ConfigurationCallback<V> callback;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private volatile V result;
+    private volatile Throwable failure;
+    private volatile boolean cancelled;
+
+    CallbackFuture(final ConfigurationCallback<V> callback) {
+        this.callback = callback;
+    }
+
+    static <V> CallbackFuture<V> completed(final V result, final ConfigurationCallback<V> callback) {
+        final CallbackFuture<V> future = new CallbackFuture<>(callback);
+        future.complete(result);
+        return future;
+    }
+
+    boolean complete(final V result) {
+        if (!done.compareAndSet(false, true)) {
+            return false;
+        }
+        this.result = result;
+        latch.countDown();
+        if (callback != null) {
+            try {
+                callback.onSuccess(result);
+            } catch (RuntimeException e) {
+                logger.error("Configuration callback threw an exception.", e);
+            }
+        }
+        return true;
+    }
+
+    boolean fail(final Throwable cause) {
+        if (!done.compareAndSet(false, true)) {
+            return false;
+        }
+        this.failure = cause;
+        latch.countDown();
+        if (callback != null) {
+            try {
+                callback.onFailure(cause);
+            } catch (RuntimeException e) {
+                logger.error("Configuration callback threw an exception.", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cancelling doesn't interrupt the underlying I/O; it only completes the future so waiting callers are released.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        if (!done.compareAndSet(false, true)) {
+            return false;
+        }
+        this.cancelled = true;
+        latch.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return getResult();
+    }
+
+    @Override
+    public V get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getResult();
+    }
+
+    private V getResult() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.alltheducks.configutils.service;
+
+/**
+ * <p>Callback notified when an asynchronous configuration operation completes.</p>
+ * <p>Callbacks are invoked on the thread which completed the operation, usually a thread of the executor supplied to
+ * the asynchronous configuration service, so they should not block.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ *
+ * @see AsyncConfigurationService
+ */
+public interface ConfigurationCallback<V> {
+
+    public void onSuccess(V result);
+
+    public void onFailure(Throwable cause);
+
+}
@@ -0,0 +1,250 @@
+package com.alltheducks.configutils.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * <p>Replaces equal immutable values within decoded configuration with a single canonical instance, reducing the heap
+ * retained when many similar configurations are loaded.</p>
+ * <p>Strings, boxed primitives and any registered immutable value types are canonicalised through a weakly referenced
+ * table, so canonical values are discarded once no configuration refers to them. The table is bounded; once it is full
+ * new values are left as they are.</p>
+ * <p>The configuration is walked reflectively. Non-final fields, mutable collections, maps and arrays are updated in
+ * place. Unmodifiable collections and JDK types other than collections are left untouched.</p>
+ * <p>A single {@link #shared()} instance can be used by every configuration service so that values are shared across
+ * services.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class ConfigurationDeduplicator {
+    private final Logger logger = LoggerFactory.getLogger(ConfigurationDeduplicator.class);
+
+    static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private static final List<Class<?>> BUILT_IN_VALUE_TYPES = Arrays.<Class<?>>asList(
+            String.class, Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class);
+
+    private static final ConfigurationDeduplicator SHARED = new ConfigurationDeduplicator(DEFAULT_MAX_ENTRIES);
+
+    private final int maxEntries;
+    private final Map<Object, WeakReference<Object>> table = new WeakHashMap<>();
+    private final Set<Class<?>> valueTypes = new CopyOnWriteArraySet<>(BUILT_IN_VALUE_TYPES);
+    private final ConcurrentMap<Class<?>, List<Field>> fieldCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxEntries The maximum number of canonical values to hold.
+     */
+    public ConfigurationDeduplicator(final int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return A deduplicator shared by every configuration service which uses it.
+     */
+    public static ConfigurationDeduplicator shared() {
+        return SHARED;
+    }
+
+    /**
+     * Registers an immutable type whose instances can be safely shared between configurations when they are equal.
+     * The type must implement equals and hashCode.
+     */
+    public void registerValueType(final Class<?> valueType) {
+        valueTypes.add(valueType);
+    }
+
+    /**
+     * Replaces values within the configuration with canonical instances.
+     *
+     * @param configuration The configuration to deduplicate. It is updated in place.
+     * @return The configuration.
+     */
+    public <C> C deduplicate(final C configuration) {
+        if (configuration == null) {
+            return null;
+        }
+        final Map<Object, Boolean> visited = new IdentityHashMap<>();
+        @SuppressWarnings("unchecked")
+        final C result = (C) process(configuration, visited);
+        return result;
+    }
+
+    /**
+     * @return The canonical instance equal to the value, or the value itself if it has no canonical instance and the
+     * table is full.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T canonicalize(final T value) {
+        if (value == null) {
+            return null;
+        }
+        synchronized (table) {
+            final WeakReference<Object> reference = table.get(value);
+            final Object canonical = reference == null ? null : reference.get();
+            if (canonical != null) {
+                return (T) canonical;
+            }
+            if (table.size() < maxEntries) {
+                table.put(value, new WeakReference<Object>(value));
+            }
+            return value;
+        }
+    }
+
+    /**
+     * @return The number of canonical values currently held.
+     */
+    public int size() {
+        synchronized (table) {
+            return table.size();
+        }
+    }
+
+    private Object process(final Object value, final Map<Object, Boolean> visited) {
+        if (value == null) {
+            return null;
+        }
+        final Class<?> type = value.getClass();
+        if (valueTypes.contains(type)) {
+            return canonicalize(value);
+        }
+        if (type.isEnum() || type.isPrimitive() || visited.put(value, Boolean.TRUE) != null) {
+            return value;
+        }
+
+        try {
+            if (value instanceof List) {
+                processList((List<?>) value, visited);
+            } else if (value instanceof Collection) {
+                processCollection((Collection<?>) value, visited);
+            } else if (value instanceof Map) {
+                processMap((Map<?, ?>) value, visited);
+            } else if (type.isArray()) {
+                processArray(value, visited);
+            } else if (!isPlatformType(type)) {
+                processFields(value, visited);
+            }
+        } catch (UnsupportedOperationException e) {
+            logger.trace("Skipping unmodifiable {}.", type.getName());
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void processList(final List<?> list, final Map<Object, Boolean> visited) {
+        final ListIterator<Object> iterator = ((List<Object>) list).listIterator();
+        while (iterator.hasNext()) {
+            final Object element = iterator.next();
+            final Object canonical = process(element, visited);
+            if (canonical != element) {
+                iterator.set(canonical);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void processCollection(final Collection<?> collection, final Map<Object, Boolean> visited) {
+        final List<Object> elements = new ArrayList<>(collection.size());
+        boolean changed = false;
+        for (Object element : collection) {
+            final Object canonical = process(element, visited);
+            changed |= canonical != element;
+            elements.add(canonical);
+        }
+        if (changed) {
+            collection.clear();
+            ((Collection<Object>) collection).addAll(elements);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void processMap(final Map<?, ?> map, final Map<Object, Boolean> visited) {
+        final Map<Object, Object> entries = new LinkedHashMap<>(map.size() * 2);
+        boolean changed = false;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            final Object key = process(entry.getKey(), visited);
+            final Object value = process(entry.getValue(), visited);
+            changed |= key != entry.getKey() || value != entry.getValue();
+            entries.put(key, value);
+        }
+        if (changed) {
+            map.clear();
+            ((Map<Object, Object>) map).putAll(entries);
+        }
+    }
+
+    private void processArray(final Object array, final Map<Object, Boolean> visited) {
+        if (array.getClass().getComponentType().isPrimitive()) {
+            return;
+        }
+        final int length = Array.getLength(array);
+        for (int i = 0; i < length; i++) {
+            final Object element = Array.get(array, i);
+            final Object canonical = process(element, visited);
+            if (canonical != element) {
+                Array.set(array, i, canonical);
+            }
+        }
+    }
+
+    private void processFields(final Object bean, final Map<Object, Boolean> visited) {
+        for (Field field : getFields(bean.getClass())) {
+            try {
+                final Object value = field.get(bean);
+                final Object canonical = process(value, visited);
+                if (canonical != value) {
+                    field.set(bean, canonical);
+                }
+            } catch (IllegalAccessException e) {
+                logger.debug("Could not deduplicate field {}.", field, e);
+            }
+        }
+    }
+
+    private List<Field> getFields(final Class<?> type) {
+        List<Field> fields = fieldCache.get(type);
+        if (fields == null) {
+            fields = new ArrayList<>();
+            for (Class<?> current = type; current != null && !isPlatformType(current); current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    final int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+            fields = Collections.unmodifiableList(fields);
+            fieldCache.putIfAbsent(type, fields);
+        }
+        return fields;
+    }
+
+    private static boolean isPlatformType(final Class<?> type) {
+        final String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.");
+    }
+
+}
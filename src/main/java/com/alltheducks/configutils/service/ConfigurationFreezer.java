@@ -0,0 +1,26 @@
+package com.alltheducks.configutils.service;
+
+/**
+ * <p>Converts a freshly loaded or persisted configuration into a read-only snapshot which can be safely shared
+ * between threads without copying.</p>
+ * <p>Implementations typically wrap collections with {@link FrozenCollections} and return a configuration whose
+ * mutators throw {@link UnsupportedOperationException}. Sub-objects which are unchanged from the previous snapshot
+ * should be reused rather than copied.</p>
+ * <p>The library doesn't provide a general purpose freezer: a plain configuration bean can't be made read-only
+ * without a hand-written read-only class (or subclass) for it, so a freezer must be written for each configuration
+ * class. {@link FrozenCollections} only takes care of its collections.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ *
+ * @see CachingConfigurationService#CachingConfigurationService(ConfigurationService, ConfigurationFreezer)
+ */
+public interface ConfigurationFreezer<C> {
+
+    /**
+     * @param configuration    The configuration that has just been loaded or persisted. It must not be modified
+     *                         after this call.
+     * @param previousSnapshot The snapshot currently being served, or null if there is none.
+     * @return A read-only snapshot of the configuration.
+     */
+    public C freeze(C configuration, C previousSnapshot);
+
+}
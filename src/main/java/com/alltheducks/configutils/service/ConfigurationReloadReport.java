@@ -0,0 +1,108 @@
+package com.alltheducks.configutils.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Describes a reload by a {@link CachingConfigurationService}: how long each stage took, and whether the
+ * reloaded configuration was published or which stage failed.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ *
+ * @see CachingConfigurationService#getLastReloadReport()
+ */
+public class ConfigurationReloadReport {
+
+    public enum Stage {
+        /**
+         * Reading the configuration file into memory.
+         */
+        READ,
+        /**
+         * Decoding the configuration. Also includes reading when the underlying service can't read and decode
+         * separately.
+         */
+        DECODE,
+        VALIDATE,
+        WARM_UP
+    }
+
+    private final long startTime;
+    private final Map<Stage, Long> durations = new EnumMap<>(Stage.class);
+    private Stage failedStage = null;
+    private Throwable failure = null;
+    private long publishedVersion = 0;
+
+    ConfigurationReloadReport(final long startTime) {
+        this.startTime = startTime;
+    }
+
+    void recordStage(final Stage stage, final long durationNanos) {
+        durations.put(stage, durationNanos);
+    }
+
+    void recordFailure(final Stage stage, final Throwable failure) {
+        this.failedStage = stage;
+        this.failure = failure;
+    }
+
+    void recordPublished(final long publishedVersion) {
+        this.publishedVersion = publishedVersion;
+    }
+
+    /**
+     * @return The time the reload started, in milliseconds since the epoch.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return How long the stage took in the given unit, or -1 if the stage didn't run.
+     */
+    public long getDuration(final Stage stage, final TimeUnit unit) {
+        final Long durationNanos = durations.get(stage);
+        return durationNanos == null ? -1 : unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return true if the reloaded configuration replaced the one being served.
+     */
+    public boolean isPublished() {
+        return publishedVersion > 0;
+    }
+
+    /**
+     * @return The version the reloaded configuration was published as, or 0 if it wasn't published.
+     */
+    public long getPublishedVersion() {
+        return publishedVersion;
+    }
+
+    /**
+     * @return The stage which failed, or null if no stage failed.
+     */
+    public Stage getFailedStage() {
+        return failedStage;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("ConfigurationReloadReport[");
+        for (Map.Entry<Stage, Long> entry : durations.entrySet()) {
+            builder.append(entry.getKey().name().toLowerCase()).append('=')
+                    .append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append("ms, ");
+        }
+        if (failedStage != null) {
+            builder.append("failed=").append(failedStage.name().toLowerCase());
+        } else {
+            builder.append("published=").append(publishedVersion);
+        }
+        return builder.append(']').toString();
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.alltheducks.configutils.service;
+
+/**
+ * <p>A configuration which has been cached by a {@link CachingConfigurationService}, along with its version, when it
+ * was cached and a fingerprint of the file it was loaded from or persisted to.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class ConfigurationSnapshot<C> {
+
+    private final long version;
+    private final long timestamp;
+    private final String fingerprint;
+    private final C configuration;
+
+    public ConfigurationSnapshot(final long version, final long timestamp, final String fingerprint, final C configuration) {
+        this.version = version;
+        this.timestamp = timestamp;
+        this.fingerprint = fingerprint;
+        this.configuration = configuration;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The time the configuration was cached, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return A checksum of the configuration file, or null if it isn't known.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public C getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConfigurationSnapshot[version=%d, timestamp=%d, fingerprint=%s]", version, timestamp, fingerprint);
+    }
+
+}
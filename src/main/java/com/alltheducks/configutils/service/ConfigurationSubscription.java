@@ -0,0 +1,16 @@
+package com.alltheducks.configutils.service;
+
+/**
+ * <p>Handle returned when subscribing to configuration updates.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ *
+ * @see AsyncReloadableConfigurationService#subscribe(ConfigurationCallback)
+ */
+public interface ConfigurationSubscription {
+
+    /**
+     * Stops the subscriber from receiving any further configuration updates.
+     */
+    public void cancel();
+
+}
@@ -0,0 +1,21 @@
+package com.alltheducks.configutils.service;
+
+import com.alltheducks.configutils.exception.InvalidConfigurationException;
+
+/**
+ * <p>Checks a reloaded configuration before it replaces the configuration currently being served. If the
+ * configuration is rejected, the previous configuration is kept and the configuration change listeners are not
+ * called.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ *
+ * @see CachingConfigurationService#setConfigurationValidator(ConfigurationValidator)
+ */
+public interface ConfigurationValidator<C> {
+
+    /**
+     * @param configuration The configuration that has just been reloaded. It must not be modified.
+     * @throws InvalidConfigurationException If the configuration should not be used.
+     */
+    public void validate(C configuration) throws InvalidConfigurationException;
+
+}
@@ -0,0 +1,21 @@
+package com.alltheducks.configutils.service;
+
+/**
+ * <p>Prepares state derived from a reloaded configuration, such as compiled patterns or lookup tables, before the
+ * configuration replaces the one currently being served. This keeps the cost of building derived state off the
+ * request threads.</p>
+ * <p>If the warmer throws, the previous configuration is kept and the configuration change listeners are not
+ * called.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ *
+ * @see CachingConfigurationService#setConfigurationWarmer(ConfigurationWarmer)
+ */
+public interface ConfigurationWarmer<C> {
+
+    /**
+     * @param configuration The validated configuration which is about to be served. If a {@link ConfigurationFreezer}
+     *                      is in use, this is the frozen configuration.
+     */
+    public void warmUp(C configuration);
+
+}
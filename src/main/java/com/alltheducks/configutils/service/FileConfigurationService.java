@@ -8,9 +8,17 @@ import java.lang.reflect.InvocationTargetException;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 
 public abstract class FileConfigurationService<C> implements ConfigurationService<C> {
@@ -22,6 +30,16 @@ public abstract class FileConfigurationService<C> implements ConfigurationServic
 
     private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
 
+    private volatile boolean compressed = false;
+    private volatile ConfigurationDeduplicator deduplicator = null;
+    private volatile String lastFingerprint = null;
+
+    /**
+     * Incremented before and after each persist, so it is odd while a persist is in progress. Allows readers which
+     * don't hold the read lock to detect that they may have read a partially written file.
+     */
+    private final AtomicLong writeSequence = new AtomicLong();
+
     public FileConfigurationService(final Class<C> configClass, final File configurationFile, final String defaultConfigFileClasspathLocation) {
         this.logger.debug("Initialising XmlConfigurationService.");
         this.configurationFile = configurationFile;
@@ -36,6 +54,34 @@ public abstract class FileConfigurationService<C> implements ConfigurationServic
      */
     @Override
     public C loadConfiguration() {
+        final C configuration = loadDefaultConfiguration();
+
+        if (!configurationFile.exists()) {
+            return configuration;
+        }
+
+        final Lock readLock = rwLock.readLock();
+        readLock.lock();
+        try {
+            try (final InputStream inputStream = new FileInputStream(configurationFile)) {
+                this.logger.debug("Loading configuration from XML file");
+                return decodeConfiguration(inputStream, configuration);
+            } catch (IOException ex) {
+                this.logger.error("Unexpected IOException while loading XML", ex);
+                throw new RuntimeException(ex);
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Loads the default configuration from the classpath, or instantiates an empty configuration bean if no default
+     * configuration is available.
+     *
+     * @return The default configuration, or null if it could not be created.
+     */
+    C loadDefaultConfiguration() {
         final InputStream defaultConfigIS;
         if (defaultConfigFileClasspathLocation != null) {
             defaultConfigIS = FileConfigurationService.class.getResourceAsStream(defaultConfigFileClasspathLocation);
@@ -48,7 +94,12 @@ public abstract class FileConfigurationService<C> implements ConfigurationServic
 
         C configuration = null;
         if (defaultConfigIS != null) {
-            configuration = decode(defaultConfigIS);
+            try (final InputStream inputStream = openForDecoding(defaultConfigIS)) {
+                configuration = deduplicate(decode(inputStream));
+            } catch (IOException ex) {
+                this.logger.error("Unexpected IOException while loading default configuration", ex);
+                throw new RuntimeException(ex);
+            }
         } else if (configClass != null) {
             try {
                 configuration = configClass.getDeclaredConstructor().newInstance();
@@ -57,25 +108,65 @@ public abstract class FileConfigurationService<C> implements ConfigurationServic
             }
         }
 
-        if (!configurationFile.exists()) {
-            return configuration;
-        }
+        return configuration;
+    }
 
+    /**
+     * Reads the whole configuration file into memory under the read lock, so that it can be decoded separately.
+     *
+     * @return The contents of the configuration file, or null if it doesn't exist.
+     */
+    byte[] readConfiguration() throws IOException {
         final Lock readLock = rwLock.readLock();
         readLock.lock();
         try {
-            try (final InputStream inputStream = new FileInputStream(configurationFile)) {
-                this.logger.debug("Loading configuration from XML file");
-                return decode(inputStream, configuration);
-            } catch (IOException ex) {
-                this.logger.error("Unexpected IOException while loading XML", ex);
-                throw new RuntimeException(ex);
+            if (!configurationFile.exists()) {
+                return null;
             }
+            return Files.readAllBytes(configurationFile.toPath());
         } finally {
             readLock.unlock();
         }
     }
 
+    /**
+     * Decodes configuration previously read by {@link #readConfiguration()} on top of the default configuration.
+     */
+    FingerprintedConfiguration<C> decodeConfiguration(final byte[] contents) throws IOException {
+        final C configuration = loadDefaultConfiguration();
+        if (contents == null) {
+            lastFingerprint = null;
+            return new FingerprintedConfiguration<>(configuration, null);
+        }
+        return decodeFingerprintedConfiguration(new ByteArrayInputStream(contents), configuration);
+    }
+
+    /**
+     * @return true if the configuration can be loaded by {@link #readConfiguration()} followed by
+     * {@link #decodeConfiguration(byte[])}, rather than only by {@link #loadConfiguration()}.
+     */
+    boolean isStagedLoadingSupported() {
+        return true;
+    }
+
+    /**
+     * Decodes the configuration, decompressing it first if required. The stream is closed once decoded.
+     */
+    C decodeConfiguration(final InputStream inputStream, final C defaultConfig) throws IOException {
+        return decodeFingerprintedConfiguration(inputStream, defaultConfig).configuration;
+    }
+
+    private FingerprintedConfiguration<C> decodeFingerprintedConfiguration(final InputStream inputStream, final C defaultConfig) throws IOException {
+        final CheckedInputStream checkedInputStream = new CheckedInputStream(inputStream, new CRC32());
+        try (final InputStream decodingStream = openForDecoding(checkedInputStream)) {
+            final C configuration = decode(new NonClosingInputStream(decodingStream), defaultConfig);
+            drain(decodingStream);
+            final String fingerprint = fingerprint(checkedInputStream.getChecksum());
+            lastFingerprint = fingerprint;
+            return new FingerprintedConfiguration<>(deduplicate(configuration), fingerprint);
+        }
+    }
+
     /**
      * Persists the configuration into the central configuration file on Blackboard's shared content.
      *
@@ -83,15 +174,27 @@ public abstract class FileConfigurationService<C> implements ConfigurationServic
      */
     @Override
     public void persistConfiguration(final C configuration) {
+        persist(configuration);
+    }
+
+    /**
+     * Persists the configuration as {@link #persistConfiguration(Object)} does.
+     *
+     * @return A checksum of the persisted file, or null if the configuration isn't persisted to a single file.
+     */
+    String persist(final C configuration) {
         this.checkType(configuration);
 
         final Lock writeLock = rwLock.writeLock();
+        final String fingerprint;
 
         writeLock.lock();
+        writeSequence.incrementAndGet();
         try (final FileChannel fileChannel = new RandomAccessFile(configurationFile, "rw").getChannel()) {
             final FileLock fileLock = fileChannel.lock();
-            try (final OutputStream outputStream = Channels.newOutputStream(fileChannel)) {
-                fileChannel.truncate(0);
+            fileChannel.truncate(0);
+            final CheckedOutputStream checkedOutputStream = new CheckedOutputStream(Channels.newOutputStream(fileChannel), new CRC32());
+            try (final OutputStream outputStream = openForEncoding(checkedOutputStream)) {
                 this.logger.debug("Persisting configuration to XML file");
                 this.encode(configuration, outputStream);
             } finally {
@@ -99,14 +202,126 @@ public abstract class FileConfigurationService<C> implements ConfigurationServic
                     fileLock.release();
                 }
             }
+            fingerprint = fingerprint(checkedOutputStream.getChecksum());
+            lastFingerprint = fingerprint;
 
         } catch (IOException ex) {
             this.logger.error("Unexpected IOException while persisting XML", ex);
             throw new RuntimeException(String.format("Failed to open configuration file for writing: %s", configurationFile.getAbsolutePath()), ex);
         } finally {
+            writeSequence.incrementAndGet();
             writeLock.unlock();
         }
+        return fingerprint;
+    }
+
+    File getConfigurationFile() {
+        return configurationFile;
+    }
+
+    /**
+     * @return A number which is odd while the configuration is being written, and changes with every write.
+     */
+    long getWriteSequence() {
+        return writeSequence.get();
+    }
+
+    /**
+     * Marks the start of a write made other than by {@link #persistConfiguration(Object)}, so that concurrent readers
+     * relying on the write sequence notice it. Must be followed by {@link #endWrite()}.
+     */
+    void beginWrite() {
+        writeSequence.incrementAndGet();
+    }
+
+    void endWrite() {
+        writeSequence.incrementAndGet();
+    }
+
+    /**
+     * @return true if the configuration file is gzip compressed when persisted.
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * <p>Sets whether the configuration file should be gzip compressed when persisted.</p>
+     * <p>Compression is detected when loading, so both compressed and plain configuration files can be read
+     * regardless of this setting.</p>
+     *
+     * @param compressed true to compress the configuration file when persisting.
+     */
+    public void setCompressed(final boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * @return A checksum of the configuration file as it was last loaded or persisted by this service, or null if it
+     * hasn't been loaded or persisted yet.
+     */
+    public String getLastFingerprint() {
+        return lastFingerprint;
+    }
+
+    public ConfigurationDeduplicator getDeduplicator() {
+        return deduplicator;
+    }
+
+    /**
+     * Sets the deduplicator used to canonicalise repeated values in each decoded configuration. Use
+     * {@link ConfigurationDeduplicator#shared()} to share values between configuration services.
+     *
+     * @param deduplicator The deduplicator, or null to disable deduplication.
+     */
+    public void setDeduplicator(final ConfigurationDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    C deduplicate(final C configuration) {
+        final ConfigurationDeduplicator currentDeduplicator = deduplicator;
+        if (currentDeduplicator == null) {
+            return configuration;
+        }
+        return currentDeduplicator.deduplicate(configuration);
+    }
+
+    /**
+     * Wraps the stream in a decompressor if it starts with the gzip magic bytes.
+     */
+    InputStream openForDecoding(final InputStream inputStream) throws IOException {
+        final BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
+        bufferedInputStream.mark(2);
+        final int first = bufferedInputStream.read();
+        final int second = bufferedInputStream.read();
+        bufferedInputStream.reset();
+
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            this.logger.debug("Configuration is gzip compressed.");
+            return new GZIPInputStream(bufferedInputStream);
+        }
+        return bufferedInputStream;
+    }
+
+    /**
+     * Reads any bytes left after decoding, so the checksum covers the whole file.
+     */
+    private static void drain(final InputStream inputStream) throws IOException {
+        final byte[] buffer = new byte[1024];
+        while (inputStream.read(buffer) != -1) {
+            // Discard the remaining bytes.
+        }
+    }
 
+    private static String fingerprint(final Checksum checksum) {
+        return String.format("%08x", checksum.getValue());
+    }
+
+    OutputStream openForEncoding(final OutputStream outputStream) throws IOException {
+        if (compressed) {
+            return new GZIPOutputStream(outputStream);
+        }
+        return outputStream;
     }
 
     protected void checkType(final Object configuration) {
@@ -122,4 +337,30 @@ public abstract class FileConfigurationService<C> implements ConfigurationServic
 
     abstract void encode(C configuration, OutputStream outputStream);
 
+    /**
+     * Stops decoders from closing the underlying stream, so the remainder of the file can be drained afterwards.
+     */
+    private static class NonClosingInputStream extends FilterInputStream {
+        NonClosingInputStream(final InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * A decoded configuration together with a checksum of the file it was decoded from.
+     */
+    static final class FingerprintedConfiguration<C> {
+        final C configuration;
+        final String fingerprint;
+
+        FingerprintedConfiguration(final C configuration, final String fingerprint) {
+            this.configuration = configuration;
+            this.fingerprint = fingerprint;
+        }
+    }
+
 }
@@ -0,0 +1,78 @@
+package com.alltheducks.configutils.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Helpers for building read-only configuration snapshots within a {@link ConfigurationFreezer}.</p>
+ * <p>Each method returns an unmodifiable copy of the given collection, unless it is equal to the corresponding
+ * collection of the previous snapshot, in which case the previous (already frozen) instance is returned so that
+ * unchanged parts of the configuration are shared between snapshots.</p>
+ * <p>Collections are frozen one level deep: their elements must themselves be immutable, or be frozen first. A
+ * collection which is the previous snapshot's instance is reused at no cost, which is the case when a new
+ * configuration is built from the previous snapshot, changing only some of its properties. Otherwise deciding
+ * whether a collection is unchanged costs a full {@code equals()} comparison, so for large collections which are
+ * usually replaced it may be cheaper to copy them without reference to the previous snapshot.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public final class FrozenCollections {
+
+    private FrozenCollections() {
+    }
+
+    public static <T> List<T> freezeList(final List<T> values, final List<T> previous) {
+        if (values == null) {
+            return null;
+        }
+        if (previous == values || (previous != null && previous.equals(values))) {
+            return previous;
+        }
+        if (values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
+    public static <T> Set<T> freezeSet(final Set<T> values, final Set<T> previous) {
+        if (values == null) {
+            return null;
+        }
+        if (previous == values || (previous != null && previous.equals(values))) {
+            return previous;
+        }
+        if (values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new LinkedHashSet<>(values));
+    }
+
+    public static <K, V> Map<K, V> freezeMap(final Map<K, V> values, final Map<K, V> previous) {
+        if (values == null) {
+            return null;
+        }
+        if (previous == values || (previous != null && previous.equals(values))) {
+            return previous;
+        }
+        if (values.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(new LinkedHashMap<>(values));
+    }
+
+    /**
+     * Returns the previous value if it is equal to the new value, allowing immutable sub-objects to be shared
+     * between snapshots.
+     */
+    public static <T> T reuseIfEqual(final T value, final T previous) {
+        if (previous == value || (previous != null && previous.equals(value))) {
+            return previous;
+        }
+        return value;
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.alltheducks.configutils.service;
 
+import com.alltheducks.configutils.codec.ConfigurationCodec;
+import com.alltheducks.configutils.codec.ConfigurationCodecs;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -9,10 +11,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+/**
+ * <p>Loads and persists the configuration from and into a JSON file.</p>
+ * <p>If a codec has been generated for the configuration class (see
+ * {@link com.alltheducks.configutils.codec.GenerateCodec}) and no custom ObjectReader or ObjectWriter is supplied,
+ * the generated codec is used instead of Jackson data binding.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
 public class JsonConfigurationService<C> extends FileConfigurationService<C> {
 
     private final ObjectReader objectReader;
     private final ObjectWriter objectWriter;
+    private final ConfigurationCodec<C> codec;
 
     public JsonConfigurationService(Class<C> configClass, File configurationFile) {
         this(configClass, configurationFile, null, null);
@@ -45,6 +55,12 @@ public class JsonConfigurationService<C> extends FileConfigurationService<C> {
         } else {
             this.objectWriter = objectWriter;
         }
+
+        if (objectReader == null && objectWriter == null) {
+            this.codec = ConfigurationCodecs.findJsonCodec(configClass);
+        } else {
+            this.codec = null;
+        }
     }
 
     private ObjectMapper newObjectMapper() {
@@ -55,6 +71,9 @@ public class JsonConfigurationService<C> extends FileConfigurationService<C> {
     @SuppressWarnings("unchecked")
     C decode(InputStream inputStream) {
         try {
+            if (codec != null) {
+                return codec.decode(inputStream, null);
+            }
             return (C) objectReader.forType(configClass).readValue(inputStream);
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -64,6 +83,9 @@ public class JsonConfigurationService<C> extends FileConfigurationService<C> {
     @Override
     C decode(InputStream inputStream, C defaultConfig) {
         try {
+            if (codec != null) {
+                return codec.decode(inputStream, defaultConfig);
+            }
             return objectReader.withValueToUpdate(defaultConfig).readValue(inputStream);
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -73,6 +95,10 @@ public class JsonConfigurationService<C> extends FileConfigurationService<C> {
     @Override
     void encode(C configuration, OutputStream outputStream) {
         try {
+            if (codec != null) {
+                codec.encode(configuration, outputStream);
+                return;
+            }
             objectWriter.writeValue(outputStream, configuration);
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -0,0 +1,506 @@
+package com.alltheducks.configutils.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Persists JSON configuration as a base file plus an append-only log of patches, so that small changes to a large
+ * configuration don't rewrite the whole file.</p>
+ * <p>Persisting compares the configuration with the previous state and appends one line to the patch log
+ * ({@code <configuration file>.patches}) holding the differences as {@code replace} and {@code remove} operations
+ * addressed by JSON Pointer paths. Loading applies only the patches appended since the last load to the cached JSON
+ * tree, and only reads the base file after the log has been compacted or the base file has been changed by hand. The
+ * tree is then bound into a new configuration bean on every load, so binding still costs as much as for
+ * {@link JsonConfigurationService}; only reading and parsing is incremental.</p>
+ * <p>Once the log grows beyond the compaction threshold, it is compacted on a background thread: the current state is
+ * written to the base file and the log is restarted with a new generation number.</p>
+ * <p>The patch log is locked while reading and writing, so it can be shared by several servers. Appending a patch also
+ * updates the modification time of the base file, so a
+ * {@link com.alltheducks.configutils.monitor.PollingConfigurationMonitor} watching the base file notices the change.
+ * The modification time and length the base file is expected to have are recorded in the log. If the base file
+ * doesn't match them, it has been edited or restored outside of this service, so it is read again and the patches
+ * before the edit are ignored. The next persist compacts the log.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class PatchLogConfigurationService<C> extends JsonConfigurationService<C> {
+    private final Logger logger = LoggerFactory.getLogger(PatchLogConfigurationService.class);
+
+    static final String PATCH_LOG_SUFFIX = ".patches";
+    static final long DEFAULT_COMPACTION_THRESHOLD_BYTES = 1024 * 1024;
+
+    private static final ConcurrentMap<String, Lock> LOG_LOCKS = new ConcurrentHashMap<>();
+
+    private final File patchLogFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Lock logLock;
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+
+    private volatile long compactionThresholdBytes = DEFAULT_COMPACTION_THRESHOLD_BYTES;
+
+    /**
+     * The cached JSON tree. It is never modified once assigned, so it can be bound without holding the lock.
+     */
+    private JsonNode state = null;
+    private long generation = -1;
+    private long logOffset = 0;
+    private long expectedBaseModified = 0;
+    private long expectedBaseLength = 0;
+    private boolean baseEdited = false;
+
+    public PatchLogConfigurationService(final Class<C> configClass, final File configurationFile) {
+        this(configClass, configurationFile, null);
+    }
+
+    public PatchLogConfigurationService(final Class<C> configClass, final File configurationFile, final String defaultConfigFileClasspathLocation) {
+        super(configClass, configurationFile, defaultConfigFileClasspathLocation);
+        logger.debug("Initialising PatchLogConfigurationService.");
+        if (configClass == null) {
+            throw new IllegalArgumentException("Configuration class must be specified");
+        }
+        this.patchLogFile = new File(configurationFile.getPath() + PATCH_LOG_SUFFIX);
+        this.logLock = getLogLock(patchLogFile);
+    }
+
+    public long getCompactionThresholdBytes() {
+        return compactionThresholdBytes;
+    }
+
+    /**
+     * @param compactionThresholdBytes The size the patch log may grow to before it is compacted into the base file.
+     */
+    public void setCompactionThresholdBytes(final long compactionThresholdBytes) {
+        this.compactionThresholdBytes = compactionThresholdBytes;
+    }
+
+    public File getPatchLogFile() {
+        return patchLogFile;
+    }
+
+    @Override
+    public C loadConfiguration() {
+        final JsonNode currentState;
+        logLock.lock();
+        try (final RandomAccessFile log = openLog("r")) {
+            final FileLock fileLock = log == null ? null : log.getChannel().lock(0, Long.MAX_VALUE, true);
+            try {
+                synchronized (this) {
+                    catchUp(log);
+                    currentState = state;
+                }
+            } finally {
+                if (fileLock != null && fileLock.isValid()) {
+                    fileLock.release();
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Unexpected IOException while loading configuration patches", ex);
+            throw new RuntimeException(ex);
+        } finally {
+            logLock.unlock();
+        }
+
+        return bind(currentState);
+    }
+
+    /**
+     * The configuration is assembled from the base file and the patch log, so it can't be read as a single file.
+     */
+    @Override
+    boolean isStagedLoadingSupported() {
+        return false;
+    }
+
+    /**
+     * Appends the configuration to the patch log, or writes it to the base file if the log must be restarted.
+     *
+     * @return null, as the configuration is spread across the base file and the patch log.
+     */
+    @Override
+    String persist(final C configuration) {
+        this.checkType(configuration);
+        final JsonNode newState = objectMapper.valueToTree(configuration);
+
+        final long logLength;
+        logLock.lock();
+        beginWrite();
+        try (final RandomAccessFile log = openLog("rw")) {
+            final FileLock fileLock = log.getChannel().lock();
+            try {
+                synchronized (this) {
+                    catchUp(log);
+                    if (generation < 0 || baseEdited) {
+                        logger.debug("Writing base configuration and starting patch log.");
+                        writeBase(newState);
+                        restartLog(log, Math.max(generation + 1, 1));
+                    } else {
+                        appendPatch(log, newState);
+                    }
+                    state = newState;
+                }
+                logLength = log.length();
+            } finally {
+                if (fileLock.isValid()) {
+                    fileLock.release();
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Unexpected IOException while persisting configuration patch", ex);
+            throw new RuntimeException(String.format("Failed to persist configuration patch: %s", patchLogFile.getAbsolutePath()), ex);
+        } finally {
+            endWrite();
+            logLock.unlock();
+        }
+
+        if (logLength > compactionThresholdBytes) {
+            compactInBackground();
+        }
+        return null;
+    }
+
+    /**
+     * Writes the current state to the base file and restarts the patch log.
+     */
+    public void compact() {
+        logLock.lock();
+        beginWrite();
+        try (final RandomAccessFile log = openLog("rw")) {
+            final FileLock fileLock = log.getChannel().lock();
+            try {
+                synchronized (this) {
+                    catchUp(log);
+                    logger.debug("Compacting configuration patch log generation {}.", generation);
+                    writeBase(state);
+                    restartLog(log, Math.max(generation + 1, 1));
+                }
+            } finally {
+                if (fileLock.isValid()) {
+                    fileLock.release();
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Unexpected IOException while compacting configuration patch log", ex);
+            throw new RuntimeException(ex);
+        } finally {
+            endWrite();
+            logLock.unlock();
+        }
+    }
+
+    private void compactInBackground() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compact();
+                } catch (RuntimeException e) {
+                    logger.error("Failed to compact configuration patch log.", e);
+                } finally {
+                    compacting.set(false);
+                }
+            }
+        }, "configuration-patch-compaction");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Brings the cached state up to date with the base file and patch log. Must be called with the patch log locked.
+     */
+    private void catchUp(final RandomAccessFile log) throws IOException {
+        final long logLength = log == null ? 0 : log.length();
+        final JsonNode header = log == null ? null : readHeader(log);
+        final long logGeneration = header == null ? -1 : header.path("generation").asLong(-1);
+
+        if (state == null || logGeneration != generation || logLength < logOffset) {
+            logger.debug("Reading base configuration (patch log generation {}).", logGeneration);
+            readBaseState();
+            generation = logGeneration;
+            if (logGeneration < 0) {
+                logOffset = logLength;
+            } else {
+                logOffset = header.path("headerLength").asLong();
+                expectedBaseModified = header.path("baseModified").asLong();
+                expectedBaseLength = header.path("baseLength").asLong();
+            }
+        }
+
+        if (logGeneration >= 0 && logLength > logOffset) {
+            final byte[] patches = new byte[(int) (logLength - logOffset)];
+            log.seek(logOffset);
+            log.readFully(patches);
+
+            final Set<JsonNode> copied = Collections.newSetFromMap(new IdentityHashMap<JsonNode, Boolean>());
+            int lineStart = 0;
+            for (int i = 0; i < patches.length; i++) {
+                if (patches[i] == '\n') {
+                    if (i > lineStart) {
+                        final JsonNode line = objectMapper.readTree(new String(patches, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                        applyPatch((ArrayNode) line.get("patch"), copied);
+                        expectedBaseModified = line.path("baseModified").asLong();
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            logOffset += lineStart;
+            logger.debug("Applied configuration patches up to offset {}.", logOffset);
+        }
+
+        final File configurationFile = getConfigurationFile();
+        if (configurationFile.lastModified() != expectedBaseModified || configurationFile.length() != expectedBaseLength) {
+            logger.info("Configuration file {} was changed outside of the patch log. Reading it again.", configurationFile.getAbsolutePath());
+            readBaseState();
+            logOffset = logLength;
+            baseEdited = logGeneration >= 0;
+        }
+    }
+
+    /**
+     * Replaces the cached state with the base file, and records the modification time and length it was read at.
+     */
+    private void readBaseState() throws IOException {
+        final File configurationFile = getConfigurationFile();
+        expectedBaseModified = configurationFile.lastModified();
+        expectedBaseLength = configurationFile.length();
+        state = readBase();
+        baseEdited = false;
+    }
+
+    private void appendPatch(final RandomAccessFile log, final JsonNode newState) throws IOException {
+        final ArrayNode patch = objectMapper.createArrayNode();
+        diff("", state, newState, patch);
+        if (patch.size() == 0) {
+            logger.debug("Configuration is unchanged. No patch appended.");
+            return;
+        }
+
+        final File configurationFile = getConfigurationFile();
+        if (!configurationFile.setLastModified(System.currentTimeMillis())) {
+            logger.warn("Could not update the modification time of {}.", configurationFile.getAbsolutePath());
+        }
+
+        final ObjectNode entry = objectMapper.createObjectNode();
+        entry.put("baseModified", configurationFile.lastModified());
+        entry.set("patch", patch);
+        final byte[] line = (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        log.seek(logOffset);
+        log.write(line);
+        log.setLength(logOffset + line.length);
+        logOffset += line.length;
+        expectedBaseModified = configurationFile.lastModified();
+        logger.debug("Appended configuration patch with {} operations.", patch.size());
+    }
+
+    /**
+     * Starts a new patch log, recording the base file which was just written. Must be called after the base file is
+     * written.
+     */
+    private void restartLog(final RandomAccessFile log, final long newGeneration) throws IOException {
+        final File configurationFile = getConfigurationFile();
+        final ObjectNode header = objectMapper.createObjectNode();
+        header.put("generation", newGeneration);
+        header.put("baseModified", configurationFile.lastModified());
+        header.put("baseLength", configurationFile.length());
+        final byte[] line = (objectMapper.writeValueAsString(header) + "\n").getBytes(StandardCharsets.UTF_8);
+        log.setLength(0);
+        log.seek(0);
+        log.write(line);
+        generation = newGeneration;
+        logOffset = line.length;
+        expectedBaseModified = header.path("baseModified").asLong();
+        expectedBaseLength = header.path("baseLength").asLong();
+        baseEdited = false;
+    }
+
+    /**
+     * @return The header of the patch log, with its length in bytes added as {@code headerLength}, or null if the log
+     * is empty.
+     */
+    private JsonNode readHeader(final RandomAccessFile log) throws IOException {
+        if (log.length() == 0) {
+            return null;
+        }
+        log.seek(0);
+        final String line = log.readLine();
+        if (line == null || line.isEmpty()) {
+            return null;
+        }
+        final ObjectNode header = (ObjectNode) objectMapper.readTree(line);
+        header.put("headerLength", log.getFilePointer());
+        return header;
+    }
+
+    private JsonNode readBase() throws IOException {
+        final File configurationFile = getConfigurationFile();
+        if (!configurationFile.exists() || configurationFile.length() == 0) {
+            return objectMapper.createObjectNode();
+        }
+        try (final InputStream inputStream = openForDecoding(new FileInputStream(configurationFile))) {
+            final JsonNode base = objectMapper.readTree(inputStream);
+            return base == null || base.isMissingNode() ? objectMapper.createObjectNode() : base;
+        }
+    }
+
+    private void writeBase(final JsonNode baseState) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (final OutputStream outputStream = openForEncoding(buffer)) {
+            objectMapper.writeValue(outputStream, baseState);
+        }
+        try (final OutputStream outputStream = new FileOutputStream(getConfigurationFile())) {
+            buffer.writeTo(outputStream);
+        }
+    }
+
+    private C bind(final JsonNode currentState) {
+        try {
+            final C defaultConfig = loadDefaultConfiguration();
+            final C configuration = defaultConfig == null
+                    ? objectMapper.treeToValue(currentState, configClass)
+                    : objectMapper.readerForUpdating(defaultConfig).<C>readValue(currentState);
+            return deduplicate(configuration);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Appends the operations which turn {@code from} into {@code to}. Objects are compared field by field; any other
+     * change replaces the whole value.
+     */
+    private void diff(final String path, final JsonNode from, final JsonNode to, final ArrayNode patch) {
+        if (from != null && from.isObject() && to.isObject()) {
+            final Iterator<String> fromFields = from.fieldNames();
+            while (fromFields.hasNext()) {
+                final String field = fromFields.next();
+                if (!to.has(field)) {
+                    patch.addObject().put("op", "remove").put("path", path + "/" + escape(field));
+                }
+            }
+            final Iterator<Map.Entry<String, JsonNode>> toFields = to.fields();
+            while (toFields.hasNext()) {
+                final Map.Entry<String, JsonNode> field = toFields.next();
+                diff(path + "/" + escape(field.getKey()), from.get(field.getKey()), field.getValue(), patch);
+            }
+        } else if (from == null || !from.equals(to)) {
+            final ObjectNode operation = patch.addObject();
+            operation.put("op", "replace");
+            operation.put("path", path);
+            operation.set("value", to);
+        }
+    }
+
+    /**
+     * Applies the patch to a copy of the state, copying only the objects along each path, so that trees which have
+     * already been handed out to be bound are never modified.
+     *
+     * @param copied The objects which have already been copied while applying the current batch of patches.
+     */
+    private void applyPatch(final ArrayNode patch, final Set<JsonNode> copied) {
+        for (JsonNode operation : patch) {
+            final List<String> path = parsePath(operation.path("path").asText());
+            final boolean remove = "remove".equals(operation.path("op").asText());
+            if (path.isEmpty()) {
+                state = remove ? objectMapper.createObjectNode() : operation.get("value");
+                continue;
+            }
+
+            final ObjectNode root = copyObject(state, copied);
+            state = root;
+            ObjectNode parent = root;
+            for (String segment : path.subList(0, path.size() - 1)) {
+                final ObjectNode child = copyObject(parent.get(segment), copied);
+                parent.set(segment, child);
+                parent = child;
+            }
+
+            final String field = path.get(path.size() - 1);
+            if (remove) {
+                parent.remove(field);
+            } else {
+                parent.set(field, operation.get("value"));
+            }
+        }
+    }
+
+    private ObjectNode copyObject(final JsonNode node, final Set<JsonNode> copied) {
+        if (node != null && copied.contains(node)) {
+            return (ObjectNode) node;
+        }
+        final ObjectNode copy = objectMapper.createObjectNode();
+        if (node != null && node.isObject()) {
+            copy.setAll((ObjectNode) node);
+        }
+        copied.add(copy);
+        return copy;
+    }
+
+    private static String escape(final String field) {
+        return field.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static List<String> parsePath(final String path) {
+        final List<String> segments = new ArrayList<>();
+        if (path.isEmpty()) {
+            return segments;
+        }
+        for (String segment : path.substring(1).split("/", -1)) {
+            segments.add(segment.replace("~1", "/").replace("~0", "~"));
+        }
+        return segments;
+    }
+
+    private RandomAccessFile openLog(final String mode) throws IOException {
+        if ("r".equals(mode) && !patchLogFile.exists()) {
+            return null;
+        }
+        return new RandomAccessFile(patchLogFile, mode);
+    }
+
+    /**
+     * File locks are held by the whole JVM, and overlapping locks taken by two threads fail rather than wait. So all
+     * access to a patch log from within the JVM, including shared reads, is serialised by a lock shared by every
+     * service using that log.
+     */
+    private static Lock getLogLock(final File patchLogFile) {
+        final String key = patchLogFile.getAbsoluteFile().toURI().normalize().toString();
+        Lock lock = LOG_LOCKS.get(key);
+        if (lock == null) {
+            final Lock newLock = new ReentrantLock();
+            lock = LOG_LOCKS.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.alltheducks.configutils.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Pins a single configuration for the duration of a request.</p>
+ * <p>
+ * <p>Once {@link #pin()} has been called on a thread, every call to {@link #loadConfiguration()} on that thread returns
+ * the same configuration until {@link #release()} is called, even if the underlying service is reloaded in the
+ * meantime. Outside of a pinned request, loading is deferred to the underlying service.</p>
+ * <p>
+ * <p>Pinning and releasing is normally done by {@link com.alltheducks.configutils.servlet.ConfigurationSnapshotFilter},
+ * which releases in a {@code finally} block on the thread that pinned; inject this service wherever the configuration
+ * is read. Anything else calling {@link #pin()} must likewise {@link #release()} on the same thread however the request
+ * ends, or the pin will be seen by the next request served by that thread. As the pinned configuration is held per
+ * thread, requests which move between threads (e.g. asynchronous resources) only see the pinned configuration on the
+ * thread that pinned it; Jersey applications can use
+ * {@link com.alltheducks.configutils.jersey.ConfigurationSnapshotRequestFilter} instead, which holds the configuration
+ * on the request.</p>
+ * <p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class RequestScopedConfigurationService<C> implements ReloadableConfigurationService<C> {
+    final Logger logger = LoggerFactory.getLogger(RequestScopedConfigurationService.class);
+
+    private final ReloadableConfigurationService<C> internalConfigurationService;
+    private final ThreadLocal<Pin<C>> pinned = new ThreadLocal<>();
+
+    /**
+     * @param internalConfigurationService The ConfigurationService the configuration is pinned from, usually a
+     *                                     {@link CachingConfigurationService}.
+     */
+    public RequestScopedConfigurationService(ReloadableConfigurationService<C> internalConfigurationService) {
+        logger.debug("Initialising RequestScopedConfigurationService with internal configuration service of type {}.", internalConfigurationService.getClass().getName());
+        this.internalConfigurationService = internalConfigurationService;
+    }
+
+    /**
+     * @return The configuration pinned to the current thread, or the configuration loaded from the underlying service
+     * if none is pinned.
+     */
+    @Override
+    public C loadConfiguration() {
+        final Pin<C> pin = pinned.get();
+        if (pin != null) {
+            return pin.configuration;
+        }
+        return internalConfigurationService.loadConfiguration();
+    }
+
+    /**
+     * Defers persisting to the underlying service. If a configuration is pinned to the current thread, it is replaced
+     * with the persisted configuration so the rest of the request sees its own change.
+     *
+     * @param configuration The configuration to be persisted.
+     */
+    @Override
+    public void persistConfiguration(C configuration) {
+        internalConfigurationService.persistConfiguration(configuration);
+        final Pin<C> pin = pinned.get();
+        if (pin != null) {
+            pin.configuration = internalConfigurationService.loadConfiguration();
+        }
+    }
+
+    /**
+     * Reloads the underlying service. Configuration already pinned is not affected.
+     */
+    @Override
+    public void reload() {
+        internalConfigurationService.reload();
+    }
+
+    /**
+     * Pins the current configuration of the underlying service to the current thread.
+     *
+     * @return true if the configuration was pinned, or false if a configuration was already pinned to this thread, in
+     * which case the caller should not {@link #release()} it.
+     */
+    public boolean pin() {
+        if (pinned.get() != null) {
+            return false;
+        }
+        pinned.set(new Pin<>(internalConfigurationService.loadConfiguration()));
+        return true;
+    }
+
+    /**
+     * Releases the configuration pinned to the current thread, if any.
+     */
+    public void release() {
+        pinned.remove();
+    }
+
+    /**
+     * @return true if a configuration is pinned to the current thread.
+     */
+    public boolean isPinned() {
+        return pinned.get() != null;
+    }
+
+    public ReloadableConfigurationService<C> getInternalConfigurationService() {
+        return internalConfigurationService;
+    }
+
+    private static class Pin<C> {
+        private C configuration;
+
+        private Pin(final C configuration) {
+            this.configuration = configuration;
+        }
+    }
+
+}
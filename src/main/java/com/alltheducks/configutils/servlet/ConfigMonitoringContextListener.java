@@ -2,12 +2,17 @@ package com.alltheducks.configutils.servlet;
 
 import com.alltheducks.configutils.exception.ConfigurationMonitorInitialisationException;
 import com.alltheducks.configutils.monitor.ConfigMonitorRunner;
+import com.alltheducks.configutils.monitor.ConfigurationPreloader;
+import com.alltheducks.configutils.monitor.PollingConfigurationMonitor;
+import com.alltheducks.configutils.service.ConfigurationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -15,6 +20,11 @@ import javax.servlet.ServletContextListener;
  * extend. Responsible for Executing the Configuration Monitor process.<br>
  * Override the {@link #getConfigurationMonitor} method to return the
  * Configuration Monitor that should be used.</p>
+ * <p>Before the context finishes initialising, the configuration services returned by
+ * {@link #getConfigurationServices} are preloaded in parallel, so the first requests don't each pay for loading the
+ * configuration. The configuration monitor is started once the preload has finished, so its first poll doesn't
+ * decode the configuration at the same time as the preload. The {@link ConfigurationPreloader} is published as a servlet context attribute named
+ * {@link ConfigurationPreloader#PRELOADER_ATTRIBUTE} and can be used to check readiness.</p>
  * <p>You configure the Listener in your web.xml as follows.</p>
  * <pre>
  * {@code
@@ -30,16 +40,38 @@ import javax.servlet.ServletContextListener;
 public abstract class ConfigMonitoringContextListener implements ServletContextListener {
     final Logger logger = LoggerFactory.getLogger(ConfigMonitoringContextListener.class);
 
+    static final int PRELOAD_TIMEOUT_SECONDS = 30;
+
     private ConfigMonitorRunner configMonitorRunner;
+    private ConfigurationPreloader configurationPreloader;
 
     @Override
     public void contextInitialized(ServletContextEvent sce) {
-        configMonitorRunner = new ConfigMonitorRunner(getConfigurationMonitor(sce.getServletContext()));
+        final ServletContext servletContext = sce.getServletContext();
+        final Runnable configMonitor = getConfigurationMonitor(servletContext);
+
+        configurationPreloader = new ConfigurationPreloader(getConfigurationServices(servletContext, configMonitor));
+        servletContext.setAttribute(ConfigurationPreloader.PRELOADER_ATTRIBUTE, configurationPreloader);
+        configurationPreloader.start();
+        try {
+            if (!configurationPreloader.awaitReady(getPreloadTimeoutSeconds(), TimeUnit.SECONDS)) {
+                logger.warn("Configuration services were not preloaded within the timeout ({} seconds).", getPreloadTimeoutSeconds());
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted whilst preloading configuration services.");
+            Thread.currentThread().interrupt();
+        }
+
+        configMonitorRunner = new ConfigMonitorRunner(configMonitor);
         configMonitorRunner.start();
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        if (configurationPreloader != null) {
+            configurationPreloader.stop();
+            sce.getServletContext().removeAttribute(ConfigurationPreloader.PRELOADER_ATTRIBUTE);
+        }
         if (configMonitorRunner != null) {
             configMonitorRunner.stop();
         }
@@ -47,4 +79,24 @@ public abstract class ConfigMonitoringContextListener implements ServletContextL
 
     public abstract Runnable getConfigurationMonitor(ServletContext servletContext) throws ConfigurationMonitorInitialisationException;
 
+    /**
+     * Returns the configuration services to preload when the context is initialised. By default this is the
+     * configuration service of the monitor, if it is a {@link PollingConfigurationMonitor}.
+     *
+     * @param servletContext The servlet context being initialised.
+     * @param configMonitor  The monitor returned by {@link #getConfigurationMonitor}.
+     * @return The configuration services to preload.
+     */
+    public Collection<? extends ConfigurationService<?>> getConfigurationServices(ServletContext servletContext, Runnable configMonitor) {
+        return ConfigurationPreloader.getMonitoredConfigurationServices(configMonitor);
+    }
+
+    /**
+     * @return The maximum time to wait for the configuration services to be preloaded before allowing the context to
+     * finish initialising.
+     */
+    public int getPreloadTimeoutSeconds() {
+        return PRELOAD_TIMEOUT_SECONDS;
+    }
+
 }
\ No newline at end of file
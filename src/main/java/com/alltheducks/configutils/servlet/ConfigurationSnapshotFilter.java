@@ -0,0 +1,75 @@
+package com.alltheducks.configutils.servlet;
+
+import com.alltheducks.configutils.service.RequestScopedConfigurationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>
+ * This is the base class for filters which pin a consistent configuration for the duration of each request. Override
+ * the {@link #getConfigurationServices} method to return the services to pin.</p>
+ * <p>When a request starts, the configuration of each {@link RequestScopedConfigurationService} is pinned, so every
+ * read within the request sees the same configuration even if it is reloaded part way through. The configuration is
+ * released when the request completes.</p>
+ * <p>You configure the Filter in your web.xml as follows.</p>
+ * <pre>
+ * {@code
+ * <filter>
+ *   <filter-name>configurationSnapshotFilter</filter-name>
+ *   <filter-class>my.package.MyConfigurationSnapshotFilter</filter-class>
+ * </filter>
+ * <filter-mapping>
+ *   <filter-name>configurationSnapshotFilter</filter-name>
+ *   <url-pattern>/*</url-pattern>
+ * </filter-mapping>}
+ * </pre>
+ * <p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public abstract class ConfigurationSnapshotFilter implements Filter {
+    final Logger logger = LoggerFactory.getLogger(ConfigurationSnapshotFilter.class);
+
+    private List<RequestScopedConfigurationService<?>> configurationServices;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        configurationServices = new ArrayList<RequestScopedConfigurationService<?>>(getConfigurationServices(filterConfig));
+        logger.debug("Pinning {} configuration services for each request.", configurationServices.size());
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        final List<RequestScopedConfigurationService<?>> pinnedServices = new ArrayList<>(configurationServices.size());
+        try {
+            for (RequestScopedConfigurationService<?> configurationService : configurationServices) {
+                if (configurationService.pin()) {
+                    pinnedServices.add(configurationService);
+                }
+            }
+            chain.doFilter(request, response);
+        } finally {
+            for (RequestScopedConfigurationService<?> configurationService : pinnedServices) {
+                configurationService.release();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        configurationServices = null;
+    }
+
+    public abstract Collection<? extends RequestScopedConfigurationService<?>> getConfigurationServices(FilterConfig filterConfig) throws ServletException;
+
+}
@@ -1,12 +1,17 @@
 package com.alltheducks.configutils.servlet;
 
 import com.alltheducks.configutils.exception.ConfigurationMonitorInitialisationException;
+import com.alltheducks.configutils.service.ConfigurationService;
+import com.alltheducks.configutils.service.ReloadableConfigurationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 
 import javax.servlet.ServletContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * <p>
@@ -71,6 +76,8 @@ import javax.servlet.ServletContext;
  *   <constructor-arg name="pollFreq" value="10"/>
  * </bean>}
  * </pre>
+ * <p>Every {@link ReloadableConfigurationService} bean in the spring context is preloaded in parallel when the
+ * context is initialised.</p>
  * <p>
  * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
  */
@@ -93,4 +100,15 @@ public class SpringBeanConfigMonitoringContextListener extends ConfigMonitoringC
         return (Runnable) springContext.getBean(beanName);
     }
 
+    @Override
+    public Collection<? extends ConfigurationService<?>> getConfigurationServices(ServletContext servletContext, Runnable configMonitor) {
+        final WebApplicationContext springContext = WebApplicationContextUtils.getWebApplicationContext(servletContext);
+        final List<ConfigurationService<?>> configurationServices = new ArrayList<>();
+        for (ReloadableConfigurationService<?> configurationService : springContext.getBeansOfType(ReloadableConfigurationService.class).values()) {
+            configurationServices.add(configurationService);
+        }
+        logger.debug("Found {} configuration service beans to preload.", configurationServices.size());
+        return configurationServices;
+    }
+
 }
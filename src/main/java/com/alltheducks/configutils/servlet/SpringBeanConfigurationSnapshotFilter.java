@@ -0,0 +1,53 @@
+package com.alltheducks.configutils.servlet;
+
+import com.alltheducks.configutils.service.RequestScopedConfigurationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>
+ * Pins the configuration of every {@link RequestScopedConfigurationService} bean in the spring context for the
+ * duration of each request.
+ * You configure the Filter in your web.xml as follows.</p>
+ * <pre>
+ * {@code
+ * <filter>
+ *   <filter-name>configurationSnapshotFilter</filter-name>
+ *   <filter-class>
+ *     com.alltheducks.configutils.servlet.SpringBeanConfigurationSnapshotFilter
+ *   </filter-class>
+ * </filter>
+ * <filter-mapping>
+ *   <filter-name>configurationSnapshotFilter</filter-name>
+ *   <url-pattern>/*</url-pattern>
+ * </filter-mapping>}
+ * </pre>
+ * <p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class SpringBeanConfigurationSnapshotFilter extends ConfigurationSnapshotFilter {
+    final Logger logger = LoggerFactory.getLogger(SpringBeanConfigurationSnapshotFilter.class);
+
+    @Override
+    public Collection<? extends RequestScopedConfigurationService<?>> getConfigurationServices(FilterConfig filterConfig) throws ServletException {
+        final WebApplicationContext springContext = WebApplicationContextUtils.getWebApplicationContext(filterConfig.getServletContext());
+        if (springContext == null) {
+            throw new ServletException("No spring context found for the configuration snapshot filter.");
+        }
+        final List<RequestScopedConfigurationService<?>> configurationServices = new ArrayList<>();
+        for (RequestScopedConfigurationService<?> configurationService : springContext.getBeansOfType(RequestScopedConfigurationService.class).values()) {
+            configurationServices.add(configurationService);
+        }
+        logger.debug("Found {} request scoped configuration service beans.", configurationServices.size());
+        return configurationServices;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.alltheducks.configutils.soak;
+
+import java.io.PrintStream;
+
+/**
+ * <p>A log-linear histogram of non-negative long values, in the style of HdrHistogram.</p>
+ * <p>Values are recorded with roughly three significant digits of precision. Instances are not thread safe; record
+ * into one histogram per thread and {@link #add} them together for reporting.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 10;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[SUB_BUCKET_COUNT + BUCKET_COUNT * SUB_BUCKET_HALF_COUNT];
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private double sum;
+
+    public void record(final long value) {
+        final long clamped = Math.max(0, value);
+        counts[indexOf(clamped)]++;
+        totalCount++;
+        sum += clamped;
+        min = Math.min(min, clamped);
+        max = Math.max(max, clamped);
+    }
+
+    public void add(final LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * @param percentile A percentile between 0 and 100.
+     * @return The highest value recorded in the bucket containing the given percentile.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        final long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= countAtPercentile) {
+                return Math.min(highestValueAt(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Writes the percentile distribution in the same layout as HdrHistogram's percentile output, so it can be
+     * plotted with the usual HdrHistogram tools.
+     *
+     * @param out            The stream to write to.
+     * @param valueUnitScale The recorded values are divided by this before being written.
+     */
+    public void outputPercentileDistribution(final PrintStream out, final double valueUnitScale) {
+        out.println(String.format("%12s %14s %10s %14s", "Value", "Percentile", "TotalCount", "1/(1-Percentile)"));
+        out.println();
+        if (totalCount > 0) {
+            final int ticksPerHalfDistance = 5;
+            double percentileReportingTick = 100.0 / (2 * ticksPerHalfDistance);
+            double percentile = 0;
+            while (percentile < 100.0) {
+                printLine(out, percentile, valueUnitScale);
+                final double halfDistance = Math.pow(2, Math.floor(Math.log(100.0 / (100.0 - percentile)) / Math.log(2)) + 1);
+                percentileReportingTick = 100.0 / (halfDistance * ticksPerHalfDistance);
+                percentile += percentileReportingTick;
+                if (percentileReportingTick < 1e-6 || countBelowPercentile(percentile) >= totalCount) {
+                    break;
+                }
+            }
+            out.println(String.format("%12.3f %2.12f %10d", max / valueUnitScale, 1.0, totalCount));
+        }
+        out.println(String.format("#[Mean    = %12.3f, Max          = %12.3f]", getMean() / valueUnitScale, max / valueUnitScale));
+        out.println(String.format("#[Min     = %12.3f, Total count  = %12d]", getMin() / valueUnitScale, totalCount));
+    }
+
+    private void printLine(final PrintStream out, final double percentile, final double valueUnitScale) {
+        final double fraction = percentile / 100.0;
+        final long value = getValueAtPercentile(percentile);
+        final long count = countBelowPercentile(percentile);
+        if (fraction < 1.0) {
+            out.println(String.format("%12.3f %2.12f %10d %14.2f", value / valueUnitScale, fraction, count, 1 / (1 - fraction)));
+        }
+    }
+
+    private long countBelowPercentile(final double percentile) {
+        return Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+    }
+
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + (int) ((value >> shift) - SUB_BUCKET_HALF_COUNT);
+    }
+
+    static long highestValueAt(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        final long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,308 @@
+package com.alltheducks.configutils.soak;
+
+import com.alltheducks.configutils.monitor.ConfigMonitorRunner;
+import com.alltheducks.configutils.monitor.ConfigurationChangeListener;
+import com.alltheducks.configutils.monitor.PollingConfigurationMonitor;
+import com.alltheducks.configutils.service.CachingConfigurationService;
+import com.alltheducks.configutils.service.ConfigurationReloadReport;
+import com.alltheducks.configutils.service.ConfigurationService;
+import com.alltheducks.configutils.service.JsonConfigurationService;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Long running stress harness which measures configuration read latency while the configuration is repeatedly
+ * persisted and reloaded.</p>
+ * <p>Two {@link CachingConfigurationService}s share one configuration file, simulating two servers. On the local
+ * service, reader threads call {@code loadConfiguration()} in a tight loop. A writer thread persists a new
+ * configuration at a fixed interval, and a {@link PollingConfigurationMonitor} reloads it. The remote service is only
+ * reloaded by its own monitor, and is used to measure how long a persisted configuration takes to reach another
+ * server.</p>
+ * <p>It records read latency, reload lag, torn reads (configuration whose checksum doesn't match its contents) and
+ * reloads which failed to read or decode. Failed reloads keep the previous configuration, so they don't count as
+ * reloads or affect the reload lag. It writes a summary and HdrHistogram style percentile distributions to the report
+ * file.</p>
+ * <p>Run with {@code ./gradlew soak}, passing options with {@code -PsoakArgs="--duration 600 --readers 64"}.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class ReloadSoakHarness {
+
+    private int durationSeconds = 300;
+    private int readerThreads = Runtime.getRuntime().availableProcessors() * 2;
+    private long writeIntervalMillis = 250;
+    private int pollFreqSeconds = 1;
+    private int entryCount = 1000;
+    private File configurationFile = new File("build/soak/soak-configuration.json");
+    private File reportFile = new File("build/soak/report.txt");
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong tornReads = new AtomicLong();
+    private final AtomicLong failedDecodes = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong tornReloads = new AtomicLong();
+
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram reloadLag = new LatencyHistogram();
+
+    public static void main(final String[] args) throws Exception {
+        final ReloadSoakHarness harness = new ReloadSoakHarness();
+        harness.parseArgs(args);
+        harness.run();
+    }
+
+    private void parseArgs(final String[] args) {
+        for (int i = 0; i < args.length - 1; i += 2) {
+            final String value = args[i + 1];
+            switch (args[i]) {
+                case "--duration":
+                    durationSeconds = Integer.parseInt(value);
+                    break;
+                case "--readers":
+                    readerThreads = Integer.parseInt(value);
+                    break;
+                case "--write-interval":
+                    writeIntervalMillis = Long.parseLong(value);
+                    break;
+                case "--poll-freq":
+                    pollFreqSeconds = Integer.parseInt(value);
+                    break;
+                case "--entries":
+                    entryCount = Integer.parseInt(value);
+                    break;
+                case "--config-file":
+                    configurationFile = new File(value);
+                    break;
+                case "--report":
+                    reportFile = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown option: %s", args[i]));
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        configurationFile.getAbsoluteFile().getParentFile().mkdirs();
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+        configurationFile.delete();
+
+        final FailureCountingConfigurationService localService = new FailureCountingConfigurationService(
+                new JsonConfigurationService<>(SoakConfiguration.class, configurationFile));
+        final FailureCountingConfigurationService remoteService = new FailureCountingConfigurationService(
+                new JsonConfigurationService<>(SoakConfiguration.class, configurationFile));
+
+        localService.persistConfiguration(newConfiguration(0));
+
+        final ConfigMonitorRunner localMonitor = new ConfigMonitorRunner(new PollingConfigurationMonitor<>(
+                pollFreqSeconds, configurationFile, localService));
+        final ConfigMonitorRunner remoteMonitor = new ConfigMonitorRunner(new PollingConfigurationMonitor<>(
+                pollFreqSeconds, configurationFile, remoteService,
+                Collections.singletonList(new ReloadLagListener())));
+
+        System.out.println(String.format("Running soak for %d seconds with %d readers, writing every %dms, polling every %ds.",
+                durationSeconds, readerThreads, writeIntervalMillis, pollFreqSeconds));
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        final CountDownLatch finished = new CountDownLatch(readerThreads + 1);
+        final List<Reader> readers = new ArrayList<>();
+
+        localMonitor.start();
+        remoteMonitor.start();
+        for (int i = 0; i < readerThreads; i++) {
+            final Reader reader = new Reader(localService, deadline, finished);
+            readers.add(reader);
+            startThread("soak-reader-" + i, reader);
+        }
+        startThread("soak-writer", new Writer(localService, deadline, finished));
+
+        finished.await();
+        localMonitor.stop();
+        remoteMonitor.stop();
+
+        final LatencyHistogram readLatency = new LatencyHistogram();
+        for (Reader reader : readers) {
+            readLatency.add(reader.latency);
+        }
+        final LatencyHistogram decodeTime = new LatencyHistogram();
+        decodeTime.add(localService.decodeTime);
+        decodeTime.add(remoteService.decodeTime);
+
+        try (final PrintStream report = new PrintStream(new FileOutputStream(reportFile), true, "UTF-8")) {
+            writeReport(report, readLatency, decodeTime);
+        }
+        writeReport(System.out, readLatency, decodeTime);
+        System.out.println(String.format("Report written to %s", reportFile.getAbsolutePath()));
+    }
+
+    private void writeReport(final PrintStream out, final LatencyHistogram readLatency, final LatencyHistogram decodeTime) {
+        out.println("Reload under load soak report");
+        out.println(String.format("Duration: %ds, readers: %d, write interval: %dms, poll frequency: %ds, entries: %d",
+                durationSeconds, readerThreads, writeIntervalMillis, pollFreqSeconds, entryCount));
+        out.println();
+        out.println(String.format("Reads:          %d", readLatency.getTotalCount()));
+        out.println(String.format("Torn reads:     %d", tornReads.get()));
+        out.println(String.format("Writes:         %d (%d failed)", writes.get(), failedWrites.get()));
+        out.println(String.format("Remote reloads: %d (%d torn)", reloads.get(), tornReloads.get()));
+        out.println(String.format("Failed reloads: %d", failedDecodes.get()));
+        out.println();
+        out.println(String.format("Read latency (us):  p50=%.3f p99=%.3f p99.9=%.3f p99.99=%.3f max=%.3f",
+                readLatency.getValueAtPercentile(50) / 1000.0, readLatency.getValueAtPercentile(99) / 1000.0,
+                readLatency.getValueAtPercentile(99.9) / 1000.0, readLatency.getValueAtPercentile(99.99) / 1000.0,
+                readLatency.getMax() / 1000.0));
+        out.println(String.format("Write latency (ms): p50=%.3f p99=%.3f max=%.3f",
+                writeLatency.getValueAtPercentile(50) / 1e6, writeLatency.getValueAtPercentile(99) / 1e6,
+                writeLatency.getMax() / 1e6));
+        out.println(String.format("Decode time (ms):   p50=%.3f p99=%.3f max=%.3f",
+                decodeTime.getValueAtPercentile(50) / 1e6, decodeTime.getValueAtPercentile(99) / 1e6,
+                decodeTime.getMax() / 1e6));
+        out.println(String.format("Reload lag (ms):    p50=%d p99=%d max=%d",
+                reloadLag.getValueAtPercentile(50), reloadLag.getValueAtPercentile(99), reloadLag.getMax()));
+        out.println();
+        out.println("Read latency distribution (us)");
+        readLatency.outputPercentileDistribution(out, 1000.0);
+        out.println();
+        out.println("Write latency distribution (ms)");
+        writeLatency.outputPercentileDistribution(out, 1e6);
+        out.println();
+        out.println("Reload lag distribution (ms)");
+        reloadLag.outputPercentileDistribution(out, 1.0);
+    }
+
+    private SoakConfiguration newConfiguration(final long sequence) {
+        final List<String> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            entries.add(String.format("institution-%d.example.edu/role-%d/%d", i, i % 17, sequence));
+        }
+        final SoakConfiguration configuration = new SoakConfiguration();
+        configuration.setSequence(sequence);
+        configuration.setWrittenAtMillis(System.currentTimeMillis());
+        configuration.setEntries(entries);
+        configuration.setChecksum(configuration.computeChecksum());
+        return configuration;
+    }
+
+    private static void startThread(final String name, final Runnable runnable) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private class Reader implements Runnable {
+        private final CachingConfigurationService<SoakConfiguration> configurationService;
+        private final long deadline;
+        private final CountDownLatch finished;
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        Reader(final CachingConfigurationService<SoakConfiguration> configurationService, final long deadline,
+               final CountDownLatch finished) {
+            this.configurationService = configurationService;
+            this.deadline = deadline;
+            this.finished = finished;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long now = System.nanoTime();
+                while (now < deadline) {
+                    final SoakConfiguration configuration = configurationService.loadConfiguration();
+                    final long end = System.nanoTime();
+                    latency.record(end - now);
+                    if (configuration == null || !configuration.hasValidChecksum()) {
+                        tornReads.incrementAndGet();
+                    }
+                    now = end;
+                }
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    private class Writer implements Runnable {
+        private final CachingConfigurationService<SoakConfiguration> configurationService;
+        private final long deadline;
+        private final CountDownLatch finished;
+
+        Writer(final CachingConfigurationService<SoakConfiguration> configurationService, final long deadline,
+               final CountDownLatch finished) {
+            this.configurationService = configurationService;
+            this.deadline = deadline;
+            this.finished = finished;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long sequence = 1;
+                while (System.nanoTime() < deadline) {
+                    final SoakConfiguration configuration = newConfiguration(sequence++);
+                    final long start = System.nanoTime();
+                    try {
+                        configurationService.persistConfiguration(configuration);
+                        writes.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        failedWrites.incrementAndGet();
+                    }
+                    writeLatency.record(System.nanoTime() - start);
+                    Thread.sleep(writeIntervalMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    private class ReloadLagListener implements ConfigurationChangeListener<SoakConfiguration> {
+        @Override
+        public void configurationChanged(final SoakConfiguration configuration) {
+            reloads.incrementAndGet();
+            if (configuration == null || !configuration.hasValidChecksum()) {
+                tornReloads.incrementAndGet();
+                return;
+            }
+            reloadLag.record(System.currentTimeMillis() - configuration.getWrittenAtMillis());
+        }
+    }
+
+    /**
+     * Counts reloads which fail to read or decode the configuration. The failure is rethrown, so the monitor keeps the
+     * previous configuration and doesn't notify the listeners. Decode times are recorded per service, as each is
+     * reloaded by its own monitor thread and the histograms aren't thread safe.
+     */
+    private class FailureCountingConfigurationService extends CachingConfigurationService<SoakConfiguration> {
+        private final LatencyHistogram decodeTime = new LatencyHistogram();
+
+        FailureCountingConfigurationService(final ConfigurationService<SoakConfiguration> internalConfigurationService) {
+            super(internalConfigurationService);
+        }
+
+        @Override
+        public void reload() {
+            try {
+                super.reload();
+            } catch (RuntimeException e) {
+                failedDecodes.incrementAndGet();
+                throw e;
+            } finally {
+                final ConfigurationReloadReport report = getLastReloadReport();
+                if (report != null && report.isPublished()) {
+                    decodeTime.record(report.getDuration(ConfigurationReloadReport.Stage.DECODE, TimeUnit.NANOSECONDS));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.alltheducks.configutils.soak;
+
+import java.util.List;
+
+/**
+ * <p>Configuration bean written and read by the {@link ReloadSoakHarness}.</p>
+ * <p>Each instance carries a checksum of its contents so that readers can detect configuration which was decoded
+ * from a partially written file.</p>
+ * <p>Copyright All the Ducks Pty Ltd. 2014.</p>
+ */
+public class SoakConfiguration {
+
+    private long sequence;
+    private long writtenAtMillis;
+    private List<String> entries;
+    private long checksum;
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getWrittenAtMillis() {
+        return writtenAtMillis;
+    }
+
+    public void setWrittenAtMillis(long writtenAtMillis) {
+        this.writtenAtMillis = writtenAtMillis;
+    }
+
+    public List<String> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<String> entries) {
+        this.entries = entries;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(long checksum) {
+        this.checksum = checksum;
+    }
+
+    public long computeChecksum() {
+        long result = sequence * 31 + writtenAtMillis;
+        if (entries != null) {
+            for (String entry : entries) {
+                result = result * 31 + (entry == null ? 0 : entry.hashCode());
+            }
+            result = result * 31 + entries.size();
+        }
+        return result;
+    }
+
+    public boolean hasValidChecksum() {
+        return checksum == computeChecksum();
+    }
+
+}
@@ -0,0 +1,272 @@
+package com.alltheducks.configutils.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles sample beans with the {@link ConfigurationCodecProcessor} and checks the generated codecs against Jackson.
+ */
+public class ConfigurationCodecProcessorTest {
+
+    private static final String NESTED_SOURCE = "package sample;\n"
+            + "@com.alltheducks.configutils.codec.GenerateCodec\n"
+            + "public class Nested {\n"
+            + "    private String value;\n"
+            + "    public String getValue() { return value; }\n"
+            + "    public void setValue(String value) { this.value = value; }\n"
+            + "}\n";
+
+    private static final String SAMPLE_SOURCE = "package sample;\n"
+            + "import java.util.List;\n"
+            + "@com.alltheducks.configutils.codec.GenerateCodec\n"
+            + "public class Sample {\n"
+            + "    public String name;\n"
+            + "    private int port;\n"
+            + "    private Boolean enabled;\n"
+            + "    private boolean secure;\n"
+            + "    private long timeout;\n"
+            + "    private Double ratio;\n"
+            + "    private List<String> hosts;\n"
+            + "    private Nested nested;\n"
+            + "    private String apiURL;\n"
+            + "    private String url;\n"
+            + "    public int getPort() { return port; }\n"
+            + "    public void setPort(int port) { this.port = port; }\n"
+            + "    public Boolean getEnabled() { return enabled; }\n"
+            + "    public void setEnabled(Boolean enabled) { this.enabled = enabled; }\n"
+            + "    public boolean isSecure() { return secure; }\n"
+            + "    public void setSecure(boolean secure) { this.secure = secure; }\n"
+            + "    public long getTimeout() { return timeout; }\n"
+            + "    public void setTimeout(long timeout) { this.timeout = timeout; }\n"
+            + "    public Double getRatio() { return ratio; }\n"
+            + "    public void setRatio(Double ratio) { this.ratio = ratio; }\n"
+            + "    public List<String> getHosts() { return hosts; }\n"
+            + "    public void setHosts(List<String> hosts) { this.hosts = hosts; }\n"
+            + "    public Nested getNested() { return nested; }\n"
+            + "    public void setNested(Nested nested) { this.nested = nested; }\n"
+            + "    public String getApiURL() { return apiURL; }\n"
+            + "    public void setApiURL(String apiURL) { this.apiURL = apiURL; }\n"
+            + "    public String getURL() { return url; }\n"
+            + "    public void setURL(String url) { this.url = url; }\n"
+            + "}\n";
+
+    private static final String SAMPLE_JSON = "{\"name\":\"example\",\"port\":8080,\"enabled\":null,\"secure\":true,"
+            + "\"timeout\":30000000000,\"ratio\":0.25,\"hosts\":[\"a\",null,\"c\"],\"nested\":{\"value\":\"inner\"},"
+            + "\"apiURL\":\"https://example.com\",\"url\":\"https://example.org\"}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private File outputDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        outputDirectory = Files.createTempDirectory("codec-test").toFile();
+    }
+
+    @Test
+    public void generatedCodec_encodesTheSameJsonAsJackson() throws Exception {
+        final ConfigurationCodec<Object> codec = compileCodec();
+        final Object configuration = objectMapper.readValue(SAMPLE_JSON, codec.getClass().getClassLoader().loadClass("sample.Sample"));
+
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        codec.encode(configuration, encoded);
+
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(configuration)), objectMapper.readTree(encoded.toByteArray()));
+    }
+
+    @Test
+    public void generatedCodec_decodesJsonWrittenByJackson() throws Exception {
+        final ConfigurationCodec<Object> codec = compileCodec();
+        final Object configuration = objectMapper.readValue(SAMPLE_JSON, codec.getClass().getClassLoader().loadClass("sample.Sample"));
+        final byte[] jacksonJson = objectMapper.writeValueAsBytes(configuration);
+
+        final Object decoded = codec.decode(new ByteArrayInputStream(jacksonJson), null);
+
+        assertEquals(objectMapper.readTree(jacksonJson), objectMapper.valueToTree(decoded));
+    }
+
+    @Test(expected = IOException.class)
+    public void generatedCodec_withUnrecognisedField_fails() throws Exception {
+        final ConfigurationCodec<Object> codec = compileCodec();
+
+        codec.decode(new ByteArrayInputStream("{\"name\":\"example\",\"unknown\":1}".getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    @Test
+    public void generatedCodec_withMalformedValues_failsLikeJackson() throws Exception {
+        final ConfigurationCodec<Object> codec = compileCodec();
+        final String[] inputs = {
+                "",
+                "{\"port\":\"abc\"}",
+                "{\"name\":{\"port\":5},\"port\":1}",
+                "{\"name\":[\"x\"],\"port\":1}",
+                "{\"port\":{}}",
+                "{\"port\":[1]}",
+                "{\"enabled\":\"yes\"}",
+                "{\"ratio\":\"half\"}",
+                "{\"hosts\":\"a\"}",
+                "{\"hosts\":[{\"a\":1}]}",
+                "{\"nested\":\"inner\"}",
+                "[]"
+        };
+        for (String input : inputs) {
+            assertSameAsJackson(codec, input);
+        }
+    }
+
+    @Test
+    public void generatedCodec_withCoercibleValues_readsLikeJackson() throws Exception {
+        final ConfigurationCodec<Object> codec = compileCodec();
+        final String[] inputs = {
+                "{\"port\":\"8080\",\"secure\":\"true\",\"timeout\":\"5\",\"ratio\":\"0.5\",\"enabled\":\"false\"}",
+                "{\"name\":5,\"hosts\":[1,true,null]}",
+                "{\"port\":null,\"secure\":null,\"timeout\":null,\"ratio\":null,\"enabled\":null}",
+                "{\"secure\":false,\"enabled\":true,\"nested\":null}",
+                "null"
+        };
+        for (String input : inputs) {
+            assertSameAsJackson(codec, input);
+        }
+    }
+
+    @Test
+    public void processor_withMismatchedAccessorTypes_reportsError() throws IOException {
+        final List<String> errors = compile(bean("private int port;\n"
+                + "public Integer getPort() { return port; }\n"
+                + "public void setPort(int port) { this.port = port; }\n"));
+
+        assertContains(errors, "has a getter of type java.lang.Integer but a setter of type int");
+    }
+
+    @Test
+    public void processor_withSetterOnly_reportsError() throws IOException {
+        final List<String> errors = compile(bean("private String secret;\n"
+                + "public void setSecret(String secret) { this.secret = secret; }\n"));
+
+        assertContains(errors, "'secret' has a setter but no getter");
+    }
+
+    @Test
+    public void processor_withGetterOnly_reportsError() throws IOException {
+        final List<String> errors = compile(bean("public String getDerived() { return \"derived\"; }\n"));
+
+        assertContains(errors, "'derived' has a getter but no setter");
+    }
+
+    @Test
+    public void processor_withJacksonAnnotation_reportsError() throws IOException {
+        final List<String> errors = compile(bean("private String apiUrl;\n"
+                + "@com.fasterxml.jackson.annotation.JsonProperty(\"api_url\")\n"
+                + "public String getApiUrl() { return apiUrl; }\n"
+                + "public void setApiUrl(String apiUrl) { this.apiUrl = apiUrl; }\n"));
+
+        assertContains(errors, "Jackson annotations are not supported by @GenerateCodec: @com.fasterxml.jackson.annotation.JsonProperty");
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConfigurationCodec<Object> compileCodec() throws Exception {
+        final List<String> errors = compile(NESTED_SOURCE, SAMPLE_SOURCE);
+        assertEquals(Collections.<String>emptyList(), errors);
+
+        final ClassLoader classLoader = new URLClassLoader(new URL[]{outputDirectory.toURI().toURL()}, getClass().getClassLoader());
+        return (ConfigurationCodec<Object>) classLoader.loadClass("sample.SampleJsonCodec").getDeclaredConstructor().newInstance();
+    }
+
+    private static String bean(final String members) {
+        return "package sample;\n"
+                + "@com.alltheducks.configutils.codec.GenerateCodec\n"
+                + "public class Sample {\n"
+                + members
+                + "}\n";
+    }
+
+    /**
+     * Compiles the sources into the output directory with the codec processor.
+     *
+     * @return The compile errors.
+     */
+    private List<String> compile(final String... sources) throws IOException {
+        final List<File> sourceFiles = new ArrayList<>();
+        for (String source : sources) {
+            final String className = source.substring(source.indexOf("public class ") + "public class ".length(), source.indexOf(" {"));
+            final File sourceFile = new File(outputDirectory, "sample/" + className + ".java");
+            sourceFile.getParentFile().mkdirs();
+            Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+            sourceFiles.add(sourceFile);
+        }
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-d", outputDirectory.getPath(), "-classpath", System.getProperty("java.class.path")),
+                    null, fileManager.getJavaFileObjectsFromFiles(sourceFiles));
+            task.setProcessors(Collections.singletonList(new ConfigurationCodecProcessor()));
+            task.call();
+        }
+
+        final List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Checks the codec fails to decode the input if Jackson does, and otherwise decodes the same configuration.
+     */
+    private void assertSameAsJackson(final ConfigurationCodec<Object> codec, final String input) throws Exception {
+        final Class<?> beanClass = codec.getClass().getClassLoader().loadClass("sample.Sample");
+        Object expected;
+        try {
+            expected = objectMapper.readValue(input, beanClass);
+        } catch (IOException e) {
+            expected = e;
+        }
+
+        final Object decoded;
+        try {
+            decoded = codec.decode(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), null);
+        } catch (IOException e) {
+            assertTrue(String.format("Codec failed to decode %s but Jackson didn't: %s", input, e), expected instanceof IOException);
+            assertEquals(input, expected.getClass(), e.getClass());
+            return;
+        }
+        assertFalse(String.format("Jackson failed to decode %s but the codec didn't: %s", input, expected), expected instanceof IOException);
+        assertEquals(input, objectMapper.valueToTree(expected), objectMapper.valueToTree(decoded));
+    }
+
+    private static void assertContains(final List<String> errors, final String expected) {
+        for (String error : errors) {
+            if (error.contains(expected)) {
+                return;
+            }
+        }
+        fail(String.format("Expected an error containing \"%s\" but got %s", expected, errors));
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.alltheducks.configutils.jersey;
+
+import com.alltheducks.configutils.service.ReloadableConfigurationService;
+import com.alltheducks.configutils.service.RequestScopedConfigurationService;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ConfigurationSnapshotRequestFilterTest {
+
+    private StubConfigurationService internalConfigurationService;
+    private RequestScopedConfigurationService<String> configurationService;
+    private ConfigurationSnapshotRequestFilter filter;
+
+    @Before
+    public void setup() {
+        internalConfigurationService = new StubConfigurationService("first");
+        configurationService = new RequestScopedConfigurationService<>(internalConfigurationService);
+        filter = new ConfigurationSnapshotRequestFilter(Collections.singletonList(configurationService));
+    }
+
+    @Test
+    public void getConfiguration_afterReload_returnsConfigurationRequestWasReceivedWith() {
+        final ContainerRequestContext requestContext = requestContext();
+        filter.filter(requestContext);
+
+        internalConfigurationService.configuration = "second";
+
+        assertEquals("first", ConfigurationSnapshotRequestFilter.getConfiguration(requestContext, configurationService));
+    }
+
+    @Test
+    public void getConfiguration_onAnotherThread_returnsConfigurationRequestWasReceivedWith() throws Exception {
+        final ContainerRequestContext requestContext = requestContext();
+        filter.filter(requestContext);
+        internalConfigurationService.configuration = "second";
+
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals("first", executorService.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return ConfigurationSnapshotRequestFilter.getConfiguration(requestContext, configurationService);
+                }
+            }).get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void filter_doesNotLeaveConfigurationPinnedToThread() {
+        filter.filter(requestContext());
+
+        internalConfigurationService.configuration = "second";
+
+        assertFalse(configurationService.isPinned());
+        assertEquals("second", configurationService.loadConfiguration());
+        assertEquals("second", ConfigurationSnapshotRequestFilter.getConfiguration(requestContext(), configurationService));
+    }
+
+    private static ContainerRequestContext requestContext() {
+        final Map<String, Object> properties = new HashMap<>();
+        return (ContainerRequestContext) Proxy.newProxyInstance(ContainerRequestContext.class.getClassLoader(),
+                new Class<?>[]{ContainerRequestContext.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getProperty":
+                                return properties.get(args[0]);
+                            case "setProperty":
+                                return properties.put((String) args[0], args[1]);
+                            case "removeProperty":
+                                return properties.remove(args[0]);
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
+    }
+
+    private static class StubConfigurationService implements ReloadableConfigurationService<String> {
+        private volatile String configuration;
+
+        private StubConfigurationService(final String configuration) {
+            this.configuration = configuration;
+        }
+
+        @Override
+        public String loadConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public void persistConfiguration(String configuration) {
+            this.configuration = configuration;
+        }
+
+        @Override
+        public void reload() {
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.alltheducks.configutils.monitor;
+
+import com.alltheducks.configutils.service.ReloadableConfigurationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PollingConfigurationMonitorTest {
+
+    private File configurationFile;
+    private HangingConfigurationService configService;
+    private Thread monitorThread;
+
+    @Before
+    public void setup() throws IOException {
+        configurationFile = Files.createTempFile("monitor-test", ".json").toFile();
+        configService = new HangingConfigurationService();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (monitorThread != null) {
+            monitorThread.interrupt();
+            monitorThread.join(5000);
+        }
+        configService.hung.countDown();
+    }
+
+    @Test
+    public void run_whileAbandonedReloadIsStillRunning_skipsReloadWithoutBlocking() throws Exception {
+        final PollTimingFile polledFile = new PollTimingFile(configurationFile);
+        monitorThread = new Thread(new PollingConfigurationMonitor<>(1, polledFile, configService, null, 2));
+        monitorThread.start();
+
+        Thread.sleep(7000);
+
+        assertEquals(1, configService.reloads.get());
+        final List<Long> polls = polledFile.getPolls();
+        assertTrue(polls.toString(), polls.size() >= 4);
+        for (int i = 2; i < polls.size(); i++) {
+            final long interval = polls.get(i) - polls.get(i - 1);
+            assertTrue(String.format("Poll %d was %d ms after the previous poll", i, interval), interval < 2000);
+        }
+    }
+
+    @Test
+    public void run_afterAbandonedReloadFinishes_retriesReload() throws Exception {
+        monitorThread = new Thread(new PollingConfigurationMonitor<>(1, configurationFile, configService, null, 1));
+        monitorThread.start();
+
+        Thread.sleep(2500);
+        configService.hung.countDown();
+        Thread.sleep(2500);
+
+        assertEquals(2, configService.reloads.get());
+    }
+
+    /**
+     * Records when the monitor polls the file.
+     */
+    private static class PollTimingFile extends File {
+        private final List<Long> polls = Collections.synchronizedList(new ArrayList<Long>());
+
+        private PollTimingFile(final File file) {
+            super(file.getPath());
+        }
+
+        @Override
+        public long lastModified() {
+            polls.add(System.nanoTime() / 1000000);
+            return super.lastModified();
+        }
+
+        private List<Long> getPolls() {
+            synchronized (polls) {
+                return new ArrayList<>(polls);
+            }
+        }
+    }
+
+    /**
+     * A service whose first reload hangs, ignoring interrupts, until it is released.
+     */
+    private static class HangingConfigurationService implements ReloadableConfigurationService<String> {
+        private final CountDownLatch hung = new CountDownLatch(1);
+        private final AtomicInteger reloads = new AtomicInteger();
+
+        @Override
+        public void reload() {
+            if (reloads.incrementAndGet() > 1) {
+                return;
+            }
+            while (true) {
+                try {
+                    hung.await();
+                    return;
+                } catch (InterruptedException e) {
+                    // Ignored, like a reload stuck in uninterruptible I/O.
+                }
+            }
+        }
+
+        @Override
+        public String loadConfiguration() {
+            return "configuration";
+        }
+
+        @Override
+        public void persistConfiguration(String configuration) {
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.alltheducks.configutils.service;
+
+import com.alltheducks.configutils.exception.InvalidConfigurationException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class AsyncCachingConfigurationServiceTest {
+
+    private ManualAsyncConfigurationService internalConfigurationService;
+    private AsyncCachingConfigurationService<String> configService;
+
+    @Before
+    public void setup() {
+        internalConfigurationService = new ManualAsyncConfigurationService();
+        configService = new AsyncCachingConfigurationService<>(internalConfigurationService);
+    }
+
+    @Test
+    public void loadConfigurationAsync_concurrentlyBeforeCached_sharesOneLoad() throws Exception {
+        final Future<String> first = configService.loadConfigurationAsync(null);
+        final Future<String> second = configService.loadConfigurationAsync(null);
+
+        assertEquals(1, internalConfigurationService.pendingLoads.size());
+        internalConfigurationService.completeLoad(0, "loaded");
+
+        assertEquals("loaded", first.get());
+        assertEquals("loaded", second.get());
+    }
+
+    @Test
+    public void reloadAsync_completingAfterPersist_doesNotReplacePersistedConfiguration() throws Exception {
+        configService.loadConfigurationAsync(null);
+        internalConfigurationService.completeLoad(0, "original");
+
+        final Future<String> reload = configService.reloadAsync(null);
+        configService.persistConfigurationAsync("persisted", null).get();
+        internalConfigurationService.completeLoad(1, "original");
+
+        assertEquals("persisted", reload.get());
+        assertEquals("persisted", configService.loadConfiguration());
+    }
+
+    @Test
+    public void reloadAsync_startedAfterPersist_replacesPersistedConfiguration() throws Exception {
+        configService.persistConfigurationAsync("persisted", null).get();
+
+        final Future<String> reload = configService.reloadAsync(null);
+        internalConfigurationService.completeLoad(0, "edited");
+
+        assertEquals("edited", reload.get());
+        assertEquals("edited", configService.loadConfiguration());
+    }
+
+    @Test
+    public void loadConfigurationAsync_withFreezer_cachesFrozenConfiguration() throws Exception {
+        configService = new AsyncCachingConfigurationService<>(internalConfigurationService, new ConfigurationFreezer<String>() {
+            @Override
+            public String freeze(String configuration, String previousSnapshot) {
+                return "frozen " + configuration;
+            }
+        });
+
+        final Future<String> load = configService.loadConfigurationAsync(null);
+        internalConfigurationService.completeLoad(0, "loaded");
+
+        assertEquals("frozen loaded", load.get());
+        configService.persistConfigurationAsync("persisted", null).get();
+        assertEquals("frozen persisted", configService.loadConfiguration());
+    }
+
+    @Test
+    public void reloadAsync_withInvalidConfiguration_keepsPreviousConfiguration() throws Exception {
+        configService.setConfigurationValidator(new ConfigurationValidator<String>() {
+            @Override
+            public void validate(String configuration) {
+                if (!configuration.startsWith("valid")) {
+                    throw new InvalidConfigurationException("Invalid configuration: " + configuration);
+                }
+            }
+        });
+        final Future<String> load = configService.loadConfigurationAsync(null);
+        internalConfigurationService.completeLoad(0, "valid");
+        assertEquals("valid", load.get());
+
+        final Future<String> reload = configService.reloadAsync(null);
+        internalConfigurationService.completeLoad(1, "invalid");
+
+        try {
+            reload.get();
+            fail("Expected the invalid configuration to be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InvalidConfigurationException);
+        }
+        assertEquals("valid", configService.loadConfiguration());
+    }
+
+    @Test
+    public void loadConfigurationAsync_withWarmer_warmsUpBeforeCaching() throws Exception {
+        final List<String> warmed = new ArrayList<>();
+        configService.setConfigurationWarmer(new ConfigurationWarmer<String>() {
+            @Override
+            public void warmUp(String configuration) {
+                warmed.add(configuration);
+            }
+        });
+
+        final Future<String> load = configService.loadConfigurationAsync(null);
+        internalConfigurationService.completeLoad(0, "loaded");
+
+        assertEquals("loaded", load.get());
+        assertEquals(Collections.singletonList("loaded"), warmed);
+    }
+
+    /**
+     * Completes loads when told to, so the test controls the order in which operations complete. Persists complete
+     * immediately.
+     */
+    private static class ManualAsyncConfigurationService implements AsyncConfigurationService<String> {
+        private final List<CallbackFuture<String>> pendingLoads = new ArrayList<>();
+
+        @Override
+        public Future<String> loadConfigurationAsync(final ConfigurationCallback<String> callback) {
+            final CallbackFuture<String> future = new CallbackFuture<>(callback);
+            pendingLoads.add(future);
+            return future;
+        }
+
+        @Override
+        public Future<Void> persistConfigurationAsync(final String configuration, final ConfigurationCallback<Void> callback) {
+            return CallbackFuture.completed(null, callback);
+        }
+
+        private void completeLoad(final int index, final String configuration) {
+            pendingLoads.get(index).complete(configuration);
+        }
+    }
+
+}
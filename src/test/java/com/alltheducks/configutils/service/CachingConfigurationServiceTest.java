@@ -0,0 +1,181 @@
+package com.alltheducks.configutils.service;
+
+import com.alltheducks.configutils.exception.InvalidConfigurationException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CachingConfigurationServiceTest {
+
+    private StubConfigurationService internalConfigurationService;
+    private CachingConfigurationService<String> configService;
+
+    @Before
+    public void setup() {
+        internalConfigurationService = new StubConfigurationService("valid");
+        configService = new CachingConfigurationService<>(internalConfigurationService);
+        configService.setConfigurationValidator(new ConfigurationValidator<String>() {
+            @Override
+            public void validate(String configuration) {
+                if (!configuration.startsWith("valid")) {
+                    throw new InvalidConfigurationException("Invalid configuration: " + configuration);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void loadConfiguration_withInvalidConfiguration_failsWithoutCaching() {
+        internalConfigurationService.configuration = "invalid";
+        try {
+            configService.loadConfiguration();
+            fail("Expected the invalid configuration to be rejected");
+        } catch (InvalidConfigurationException e) {
+            assertEquals(ConfigurationReloadReport.Stage.VALIDATE, configService.getLastReloadReport().getFailedStage());
+        }
+        assertNull(configService.getCurrentSnapshot());
+
+        internalConfigurationService.configuration = "valid";
+        assertEquals("valid", configService.loadConfiguration());
+    }
+
+    @Test
+    public void loadConfiguration_warmsUpInitialConfiguration() {
+        final StringBuilder warmed = new StringBuilder();
+        configService.setConfigurationWarmer(new ConfigurationWarmer<String>() {
+            @Override
+            public void warmUp(String configuration) {
+                warmed.append(configuration);
+            }
+        });
+
+        configService.loadConfiguration();
+
+        assertEquals("valid", warmed.toString());
+    }
+
+    @Test(expected = InvalidConfigurationException.class)
+    public void reload_withInvalidConfiguration_keepsPreviousConfiguration() {
+        configService.loadConfiguration();
+        internalConfigurationService.configuration = "invalid";
+        try {
+            configService.reload();
+        } finally {
+            assertEquals("valid", configService.loadConfiguration());
+        }
+    }
+
+    @Test
+    public void reload_interruptedBeforePublishing_discardsConfiguration() {
+        configService.loadConfiguration();
+        internalConfigurationService.configuration = "valid but cancelled";
+        configService.setConfigurationWarmer(new ConfigurationWarmer<String>() {
+            @Override
+            public void warmUp(String configuration) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try {
+            configService.reload();
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertEquals("valid", configService.loadConfiguration());
+        assertEquals(1, configService.getVersion());
+        assertFalse(configService.getLastReloadReport().isPublished());
+    }
+
+    @Test
+    public void reload_recordsFingerprintOfDecodedFile() throws IOException {
+        final File configurationFile = new File(Files.createTempDirectory("caching-test").toFile(), "config.json");
+        final JsonConfigurationService<TestConfiguration> fileConfigService = new JsonConfigurationService<>(TestConfiguration.class, configurationFile);
+        final CachingConfigurationService<TestConfiguration> cachingConfigService = new CachingConfigurationService<>(fileConfigService);
+
+        cachingConfigService.persistConfiguration(new TestConfiguration("a"));
+        final String persistedFingerprint = cachingConfigService.getCurrentSnapshot().getFingerprint();
+        assertNotNull(persistedFingerprint);
+
+        cachingConfigService.reload();
+        assertEquals(persistedFingerprint, cachingConfigService.getCurrentSnapshot().getFingerprint());
+
+        assertTrue(configurationFile.delete());
+        cachingConfigService.reload();
+        assertNull(cachingConfigService.getCurrentSnapshot().getFingerprint());
+    }
+
+    @Test
+    public void rollbackTo_withPersist_neverOverwritesLaterPersist() throws InterruptedException {
+        final List<String> persisted = Collections.synchronizedList(new ArrayList<String>());
+        final CachingConfigurationService<String> slowConfigService = new CachingConfigurationService<>(new StubConfigurationService("a") {
+            @Override
+            public void persistConfiguration(String configuration) {
+                if (configuration.equals("a")) {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                persisted.add(configuration);
+            }
+        });
+        slowConfigService.setHistorySize(4);
+        slowConfigService.loadConfiguration();
+        slowConfigService.persistConfiguration("b");
+
+        slowConfigService.rollbackTo(1, true);
+        slowConfigService.persistConfiguration("c");
+        Thread.sleep(500);
+
+        assertEquals("c", persisted.get(persisted.size() - 1));
+        assertEquals("c", slowConfigService.loadConfiguration());
+    }
+
+    public static class TestConfiguration {
+        private String host;
+
+        public TestConfiguration() {
+        }
+
+        TestConfiguration(final String host) {
+            this.host = host;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+    }
+
+    private static class StubConfigurationService implements ConfigurationService<String> {
+        private String configuration;
+
+        private StubConfigurationService(final String configuration) {
+            this.configuration = configuration;
+        }
+
+        @Override
+        public String loadConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public void persistConfiguration(String configuration) {
+            this.configuration = configuration;
+        }
+    }
+
+}
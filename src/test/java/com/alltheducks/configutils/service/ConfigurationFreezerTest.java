@@ -0,0 +1,157 @@
+package com.alltheducks.configutils.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConfigurationFreezerTest {
+
+    private CachingConfigurationService<TestConfiguration> configService;
+
+    @Before
+    public void setup() {
+        final TestConfiguration initial = new TestConfiguration();
+        initial.setName("initial");
+        initial.setHosts(new ArrayList<>(Arrays.asList("a", "b")));
+        initial.getSettings().put("port", "8080");
+        configService = new CachingConfigurationService<>(new StubConfigurationService(initial), new TestConfigurationFreezer());
+    }
+
+    @Test
+    public void loadConfiguration_returnsSnapshotWhichCannotBeModified() {
+        final TestConfiguration snapshot = configService.loadConfiguration();
+
+        try {
+            snapshot.getHosts().add("c");
+            fail("Expected the hosts to be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            snapshot.getSettings().put("port", "80");
+            fail("Expected the settings to be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            snapshot.setName("changed");
+            fail("Expected the name to be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("a", "b"), configService.loadConfiguration().getHosts());
+    }
+
+    @Test
+    public void persistConfiguration_reusesUnchangedCollections() {
+        final TestConfiguration previous = configService.loadConfiguration();
+
+        final TestConfiguration configuration = new TestConfiguration();
+        configuration.setName("changed");
+        configuration.setHosts(new ArrayList<>(Arrays.asList("a", "b")));
+        configuration.getSettings().put("port", "80");
+        configService.persistConfiguration(configuration);
+
+        final TestConfiguration snapshot = configService.loadConfiguration();
+        assertEquals("changed", snapshot.getName());
+        assertSame(previous.getHosts(), snapshot.getHosts());
+        assertNotSame(previous.getSettings(), snapshot.getSettings());
+        assertEquals("80", snapshot.getSettings().get("port"));
+    }
+
+    @Test
+    public void persistConfiguration_builtFromPreviousSnapshot_reusesItsCollections() {
+        final TestConfiguration previous = configService.loadConfiguration();
+
+        final TestConfiguration configuration = new TestConfiguration();
+        configuration.setName("changed");
+        configuration.setHosts(previous.getHosts());
+        configuration.setSettings(previous.getSettings());
+        configService.persistConfiguration(configuration);
+
+        final TestConfiguration snapshot = configService.loadConfiguration();
+        assertSame(previous.getHosts(), snapshot.getHosts());
+        assertSame(previous.getSettings(), snapshot.getSettings());
+    }
+
+    /**
+     * A hand-written freezer, as each configuration class needs one.
+     */
+    private static class TestConfigurationFreezer implements ConfigurationFreezer<TestConfiguration> {
+        @Override
+        public TestConfiguration freeze(final TestConfiguration configuration, final TestConfiguration previousSnapshot) {
+            final TestConfiguration frozen = new TestConfiguration();
+            frozen.setName(configuration.getName());
+            frozen.setHosts(FrozenCollections.freezeList(configuration.getHosts(), previousSnapshot == null ? null : previousSnapshot.getHosts()));
+            frozen.setSettings(FrozenCollections.freezeMap(configuration.getSettings(), previousSnapshot == null ? null : previousSnapshot.getSettings()));
+            frozen.frozen = true;
+            return frozen;
+        }
+    }
+
+    public static class TestConfiguration {
+        private boolean frozen;
+        private String name;
+        private List<String> hosts;
+        private Map<String, String> settings = new LinkedHashMap<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            checkNotFrozen();
+            this.name = name;
+        }
+
+        public List<String> getHosts() {
+            return hosts;
+        }
+
+        public void setHosts(List<String> hosts) {
+            checkNotFrozen();
+            this.hosts = hosts;
+        }
+
+        public Map<String, String> getSettings() {
+            return settings;
+        }
+
+        public void setSettings(Map<String, String> settings) {
+            checkNotFrozen();
+            this.settings = settings;
+        }
+
+        private void checkNotFrozen() {
+            if (frozen) {
+                throw new UnsupportedOperationException("Configuration snapshots are read-only");
+            }
+        }
+    }
+
+    private static class StubConfigurationService implements ConfigurationService<TestConfiguration> {
+        private TestConfiguration configuration;
+
+        private StubConfigurationService(final TestConfiguration configuration) {
+            this.configuration = configuration;
+        }
+
+        @Override
+        public TestConfiguration loadConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public void persistConfiguration(TestConfiguration configuration) {
+            this.configuration = configuration;
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.alltheducks.configutils.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class PatchLogConfigurationServiceTest {
+
+    private File configurationFile;
+
+    @Before
+    public void setup() throws IOException {
+        configurationFile = new File(Files.createTempDirectory("patch-log-test").toFile(), "config.json");
+    }
+
+    @Test
+    public void loadConfiguration_concurrentlyOnOneInstance_succeeds() throws Exception {
+        final PatchLogConfigurationService<TestConfiguration> configService = newService();
+        configService.persistConfiguration(configuration("a"));
+        configService.persistConfiguration(configuration("b"));
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(16);
+        try {
+            final List<Future<TestConfiguration>> loads = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                loads.add(executorService.submit(new Callable<TestConfiguration>() {
+                    @Override
+                    public TestConfiguration call() {
+                        return configService.loadConfiguration();
+                    }
+                }));
+            }
+
+            int failures = 0;
+            for (Future<TestConfiguration> load : loads) {
+                try {
+                    assertEquals("b", load.get().getHost());
+                } catch (ExecutionException e) {
+                    failures++;
+                }
+            }
+            assertEquals(0, failures);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void loadConfiguration_whilePersisting_neverSeesPartialPatch() throws Exception {
+        final PatchLogConfigurationService<TestConfiguration> writer = newService();
+        final PatchLogConfigurationService<TestConfiguration> reader = newService();
+        writer.persistConfiguration(configuration("0"));
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> loads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                loads.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int j = 0; j < 100; j++) {
+                            final TestConfiguration configuration = reader.loadConfiguration();
+                            assertEquals(configuration.getHost(), configuration.getSettings().get("host"));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (int i = 1; i <= 50; i++) {
+                writer.persistConfiguration(configuration(Integer.toString(i)));
+            }
+            for (Future<?> load : loads) {
+                load.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void loadConfiguration_onAnotherInstance_appliesNewPatches() {
+        final PatchLogConfigurationService<TestConfiguration> writer = newService();
+        final PatchLogConfigurationService<TestConfiguration> reader = newService();
+
+        writer.persistConfiguration(configuration("a"));
+        assertEquals("a", reader.loadConfiguration().getHost());
+
+        final TestConfiguration configuration = configuration("b");
+        configuration.getSettings().remove("host");
+        configuration.getSettings().put("port", "8080");
+        writer.persistConfiguration(configuration);
+
+        final TestConfiguration loaded = reader.loadConfiguration();
+        assertEquals("b", loaded.getHost());
+        assertNull(loaded.getSettings().get("host"));
+        assertEquals("8080", loaded.getSettings().get("port"));
+    }
+
+    @Test
+    public void loadConfiguration_afterBaseFileEditedByHand_returnsEditedConfiguration() throws IOException {
+        final PatchLogConfigurationService<TestConfiguration> configService = newService();
+        configService.persistConfiguration(configuration("a"));
+        configService.persistConfiguration(configuration("b"));
+        assertEquals("b", configService.loadConfiguration().getHost());
+
+        editBaseFile("{\"host\":\"edited\",\"settings\":{}}");
+
+        assertEquals("edited", configService.loadConfiguration().getHost());
+        assertEquals("edited", newService().loadConfiguration().getHost());
+    }
+
+    @Test
+    public void persistConfiguration_afterBaseFileEditedByHand_restartsPatchLog() throws IOException {
+        final PatchLogConfigurationService<TestConfiguration> configService = newService();
+        configService.persistConfiguration(configuration("a"));
+        configService.persistConfiguration(configuration("b"));
+        editBaseFile("{\"host\":\"edited\",\"settings\":{}}");
+
+        configService.persistConfiguration(configuration("c"));
+
+        assertEquals("c", newService().loadConfiguration().getHost());
+        final String header = new String(Files.readAllBytes(configService.getPatchLogFile().toPath()), StandardCharsets.UTF_8);
+        assertTrue(header, header.startsWith("{\"generation\":2,"));
+    }
+
+    @Test
+    public void compact_keepsConfiguration() {
+        final PatchLogConfigurationService<TestConfiguration> configService = newService();
+        final PatchLogConfigurationService<TestConfiguration> reader = newService();
+        configService.persistConfiguration(configuration("a"));
+        configService.persistConfiguration(configuration("b"));
+        assertEquals("b", reader.loadConfiguration().getHost());
+
+        configService.compact();
+
+        assertEquals("b", reader.loadConfiguration().getHost());
+        assertEquals("b", newService().loadConfiguration().getHost());
+    }
+
+    @Test
+    public void loadConfigurationAsync_appliesPatches() throws Exception {
+        final PatchLogConfigurationService<TestConfiguration> configService = newService();
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final AsyncFileConfigurationService<TestConfiguration> asyncConfigService = new AsyncFileConfigurationService<>(configService, executorService);
+            asyncConfigService.persistConfigurationAsync(configuration("a"), null).get();
+            asyncConfigService.persistConfigurationAsync(configuration("b"), null).get();
+
+            assertEquals("b", asyncConfigService.loadConfigurationAsync(null).get().getHost());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void persistConfiguration_changesWriteSequence() {
+        final PatchLogConfigurationService<TestConfiguration> configService = newService();
+        final long writeSequence = configService.getWriteSequence();
+
+        configService.persistConfiguration(configuration("a"));
+        configService.persistConfiguration(configuration("b"));
+
+        assertEquals(writeSequence + 4, configService.getWriteSequence());
+    }
+
+    private PatchLogConfigurationService<TestConfiguration> newService() {
+        return new PatchLogConfigurationService<>(TestConfiguration.class, configurationFile);
+    }
+
+    private void editBaseFile(final String json) throws IOException {
+        final long lastModified = configurationFile.lastModified();
+        Files.write(configurationFile.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        configurationFile.setLastModified(lastModified + 5000);
+    }
+
+    private static TestConfiguration configuration(final String host) {
+        final TestConfiguration configuration = new TestConfiguration();
+        configuration.setHost(host);
+        configuration.getSettings().put("host", host);
+        configuration.getSettings().put("unchanged", "value");
+        return configuration;
+    }
+
+    public static class TestConfiguration {
+        private String host;
+        private Map<String, String> settings = new LinkedHashMap<>();
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public Map<String, String> getSettings() {
+            return settings;
+        }
+
+        public void setSettings(Map<String, String> settings) {
+            this.settings = settings;
+        }
+    }
+
+}